@@ -0,0 +1,113 @@
+package cc.srv.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 64 threads on a few auctions: 52 bidders doing what placeBid does (conditional update of
+ * the highest bid, then cache write of the returned state) and 8 loaders doing what
+ * getOrLoadAuction does (DB read, then cache write), both under StripedLock.AUCTIONS.
+ * The DB and the cache are arrays here, with a yield between the DB step and the cache
+ * write to widen the race window.
+ *
+ * 4 checkers take the same stripe and compare the cache with the DB: whenever the stripe is
+ * free they must agree. The run fails at the end of an iteration if they ever did not, or
+ * if the cache does not hold the DB's highest bid of every auction. With the bidders and
+ * loaders outside the lock, every iteration fails.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StripedLockStress {
+
+	// one hot auction, and a few sharing the stripes
+	@Param({ "1", "16" })
+	public int auctions;
+
+	private String[] ids;
+	private AtomicLongArray db;
+	private AtomicLongArray cache;
+	private AtomicLong violations;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		ids = new String[auctions];
+		for( int i = 0; i < auctions; i++ )
+			ids[i] = "auction-" + i;
+		db = new AtomicLongArray(auctions);
+		cache = new AtomicLongArray(auctions);
+		violations = new AtomicLong();
+	}
+
+	@TearDown(Level.Iteration)
+	public void verify() {
+		if( violations.get() > 0 )
+			throw new IllegalStateException(violations.get() + " times the cache did not hold the DB state");
+		for( int i = 0; i < auctions; i++ )
+			if( cache.get(i) != db.get(i) )
+				throw new IllegalStateException(ids[i] + ": cache holds " + cache.get(i) + ", DB holds " + db.get(i));
+	}
+
+	@Benchmark
+	@Group("auction")
+	@GroupThreads(52)
+	public Boolean bid() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int i = random.nextInt(auctions);
+		long amount = random.nextLong(1, Long.MAX_VALUE);
+		return StripedLock.AUCTIONS.withLock(ids[i], () -> {
+			// accepted only above the current highest bid, like the findOneAndUpdate filter
+			if( db.accumulateAndGet(i, amount, Math::max) != amount )
+				return false;
+			Thread.yield();
+			cache.set(i, amount);
+			return true;
+		});
+	}
+
+	@Benchmark
+	@Group("auction")
+	@GroupThreads(8)
+	public Long load() {
+		int i = ThreadLocalRandom.current().nextInt(auctions);
+		return StripedLock.AUCTIONS.withLock(ids[i], () -> {
+			long read = db.get(i);
+			Thread.yield();
+			cache.set(i, read);
+			return read;
+		});
+	}
+
+	@Benchmark
+	@Group("auction")
+	@GroupThreads(4)
+	public Boolean check() {
+		int i = ThreadLocalRandom.current().nextInt(auctions);
+		return StripedLock.AUCTIONS.withLock(ids[i], () -> {
+			if( cache.get(i) == db.get(i) )
+				return true;
+			violations.incrementAndGet();
+			return false;
+		});
+	}
+}
@@ -0,0 +1,120 @@
+package cc.srv.db;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.mongodb.MongoClientSettings;
+import cc.srv.data.LegoSet;
+
+/**
+ * BSON to LegoSet and back, as the driver does on each read and write, without a server:
+ * the former mapping (decode into a Document, then copy it field by field; build a
+ * Document by hand to write) against the POJO codec of MongoCodecs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MappingBenchmark {
+
+	// photos of the set: the one list of the document
+	@Param({ "1", "20" })
+	public int photos;
+
+	private Codec<Document> documentCodec;
+	private Codec<LegoSet> legoSetCodec;
+	private LegoSet legoSet;
+	private byte[] bson;
+
+	@Setup
+	public void setup() {
+		CodecRegistry defaults = MongoClientSettings.getDefaultCodecRegistry();
+		documentCodec = defaults.get(Document.class);
+		legoSetCodec = MongoCodecs.registry().get(LegoSet.class);
+
+		legoSet = new LegoSet("legoset-42", "Millennium Falcon", "75192", "Ultimate Collector Series, 7541 pieces");
+		for( int i = 0; i < photos; i++ )
+			legoSet.addPhotoMediaId(String.format("%064x", i) + ".jpg");
+		bson = encode(legoSetCodec, legoSet);
+	}
+
+	@Benchmark
+	public LegoSet decodeDocument() {
+		return documentToLegoSet(decode(documentCodec));
+	}
+
+	@Benchmark
+	public LegoSet decodePojo() {
+		return decode(legoSetCodec);
+	}
+
+	@Benchmark
+	public byte[] encodeDocument() {
+		return encode(documentCodec, legoSetToDocument(legoSet));
+	}
+
+	@Benchmark
+	public byte[] encodePojo() {
+		return encode(legoSetCodec, legoSet);
+	}
+
+	private <T> T decode(Codec<T> codec) {
+		try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bson))) {
+			return codec.decode(reader, DecoderContext.builder().build());
+		}
+	}
+
+	private static <T> byte[] encode(Codec<T> codec, T value) {
+		BasicOutputBuffer buffer = new BasicOutputBuffer();
+		try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+			codec.encode(writer, value, EncoderContext.builder().build());
+		}
+		return buffer.toByteArray();
+	}
+
+	// the converters MongoDBLayer used before MongoCodecs, kept here as the baseline
+
+	static LegoSet documentToLegoSet(Document doc) {
+		LegoSet legoSet = new LegoSet();
+		legoSet.setId(doc.getString("_id"));
+		legoSet.setName(doc.getString("name"));
+		legoSet.setDescription(doc.getString("description"));
+		List<String> photoMediaIds = doc.getList("photoMediaIds", String.class);
+		if( photoMediaIds != null )
+			legoSet.setPhotoUrls(photoMediaIds);
+		legoSet.setCreatedAt(doc.getDate("createdAt"));
+		return legoSet;
+	}
+
+	static Document legoSetToDocument(LegoSet legoSet) {
+		Document doc = new Document();
+		if( legoSet.getId() != null && !legoSet.getId().isEmpty() )
+			doc.put("_id", legoSet.getId());
+		doc.put("name", legoSet.getName());
+		doc.put("description", legoSet.getDescription());
+		doc.put("photoMediaIds", legoSet.getPhotoMediaIds());
+		doc.put("createdAt", legoSet.getCreatedAt());
+		return doc;
+	}
+}
@@ -0,0 +1,92 @@
+package cc.utils;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of Hash against the previous implementation (one static MessageDigest behind
+ * a monitor, hex through BigInteger). Run with -t 1, 2, 4, 8...: the per-thread digests
+ * should scale with the thread count up to the number of cores, the synchronized one not.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashBenchmark {
+
+	// a small ETag-sized body and a larger JSON list
+	@Param({ "256", "16384" })
+	public int size;
+
+	private byte[] data;
+	private String userId;
+
+	@Setup
+	public void setup() {
+		data = new byte[size];
+		for( int i = 0; i < size; i++ )
+			data[i] = (byte) ('a' + i % 26);
+		userId = "user-" + size;
+	}
+
+	@Benchmark
+	public byte[] digest() {
+		return Hash.digest(data);
+	}
+
+	@Benchmark
+	public String of() {
+		return Hash.of(userId, size, "salt");
+	}
+
+	@Benchmark
+	public byte[] digestSynchronized() {
+		return SynchronizedHash.digest(data);
+	}
+
+	@Benchmark
+	public String ofSynchronized() {
+		return SynchronizedHash.of(userId, size, "salt");
+	}
+
+	// the implementation Hash replaced, kept here as the baseline
+	static class SynchronizedHash {
+		static MessageDigest md;
+
+		static {
+			try {
+				md = MessageDigest.getInstance("SHA1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		synchronized static byte[] digest(byte[] data) {
+			md.reset();
+			md.update(data);
+			return md.digest();
+		}
+
+		synchronized static String of(Object... values) {
+			md.reset();
+			for( Object o : values )
+				md.update(o.toString().getBytes());
+			return String.format("%016X", new BigInteger(1, md.digest()));
+		}
+	}
+}
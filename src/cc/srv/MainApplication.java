@@ -4,9 +4,11 @@ import java.util.HashSet;
 import java.util.Set;
 import cc.srv.data.UserResource;
 import cc.srv.data.AuctionResource;
+import cc.srv.data.GzipInterceptor;
 import cc.srv.data.LegoSetResource;
 import cc.srv.data.MediaResource;   
 import cc.srv.data.TestRessource;
+import cc.srv.scheduler.AuctionCloser;
 
 import jakarta.ws.rs.core.Application;
 
@@ -20,8 +22,11 @@ public class MainApplication extends Application {
         resources.add(AuctionResource.class);
         resources.add(LegoSetResource.class);
         resources.add(TestRessource.class);
+        resources.add(GzipInterceptor.class);
         singletons.add(new MediaResource());
-        
+
+        // ferme chaque enchère à sa closeDate (voir AuctionCloser)
+        AuctionCloser.start();
     }
 
     @Override
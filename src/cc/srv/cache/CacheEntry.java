@@ -0,0 +1,124 @@
+package cc.srv.cache;
+
+import cc.utils.Hash;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A cached JSON value with its soft expiry and ETag.
+ * Stored as [MAGIC][softExpiresAt: long][computeMillis: int][sha1(json): 20][json...] so
+ * that the metadata travels with the value in a single GET/MGET, and a conditional GET can
+ * be answered without hashing the body again. Older formats are still read: entries
+ * without a digest hash their JSON on demand, plain JSON has no soft expiry.
+ *
+ * The JSON is never copied out of the stored bytes on a hit: it is written (writeTo) or
+ * parsed (read) in place, behind the header.
+ *
+ * Past the soft expiry the value is still served (stale-while-revalidate) while one
+ * background refresh runs; the Redis TTL is the hard expiry.
+ */
+public class CacheEntry {
+    private static final byte MAGIC_NO_DIGEST = 1;
+    private static final byte MAGIC = 2;
+    private static final int DIGEST_SIZE = 20;
+    private static final int HEADER_SIZE_NO_DIGEST = 1 + 8 + 4;
+    private static final int HEADER_SIZE = HEADER_SIZE_NO_DIGEST + DIGEST_SIZE;
+
+    private final byte[] raw;
+    private final int offset;
+    private final long softExpiresAt;
+    private final int computeMillis;
+    private final byte[] digest;
+
+    private CacheEntry(byte[] raw, int offset, long softExpiresAt, int computeMillis, byte[] digest) {
+        this.raw = raw;
+        this.offset = offset;
+        this.softExpiresAt = softExpiresAt;
+        this.computeMillis = computeMillis;
+        this.digest = digest;
+    }
+
+    public static byte[] wrap(byte[] json, long softExpiresAt, int computeMillis) {
+        return ByteBuffer.allocate(HEADER_SIZE + json.length)
+            .put(MAGIC)
+            .putLong(softExpiresAt)
+            .putInt(computeMillis)
+            .put(Hash.digest(json))
+            .put(json)
+            .array();
+    }
+
+    public static CacheEntry unwrap(byte[] raw) {
+        if (raw == null || raw.length == 0) {
+            return null;
+        }
+        if (raw[0] == MAGIC && raw.length >= HEADER_SIZE) {
+            ByteBuffer buffer = ByteBuffer.wrap(raw, 1, HEADER_SIZE - 1);
+            long softExpiresAt = buffer.getLong();
+            int computeMillis = buffer.getInt();
+            byte[] digest = new byte[DIGEST_SIZE];
+            buffer.get(digest);
+            return new CacheEntry(raw, HEADER_SIZE, softExpiresAt, computeMillis, digest);
+        }
+        if (raw[0] == MAGIC_NO_DIGEST && raw.length >= HEADER_SIZE_NO_DIGEST) {
+            ByteBuffer buffer = ByteBuffer.wrap(raw, 1, HEADER_SIZE_NO_DIGEST - 1);
+            return new CacheEntry(raw, HEADER_SIZE_NO_DIGEST, buffer.getLong(), buffer.getInt(), null);
+        }
+        // ancien format : JSON brut, jamais rafraîchi en avance
+        return new CacheEntry(raw, 0, Long.MAX_VALUE, 0, null);
+    }
+
+    /**
+     * A copy of the JSON, for the few callers that need it as an array of its own. Hot
+     * paths use writeTo or read instead.
+     */
+    public byte[] json() {
+        return offset == 0 ? raw : Arrays.copyOfRange(raw, offset, raw.length);
+    }
+
+    public int length() {
+        return raw.length - offset;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(raw, offset, raw.length - offset);
+    }
+
+    public <T> T read(ObjectMapper mapper, Class<T> type) throws IOException {
+        return mapper.readValue(raw, offset, raw.length - offset, type);
+    }
+
+    public <T> T read(ObjectMapper mapper, TypeReference<T> type) throws IOException {
+        return mapper.readValue(raw, offset, raw.length - offset, type);
+    }
+
+    /**
+     * Strong ETag value (unquoted): the SHA-1 of the JSON, read from the header when present.
+     */
+    public String etag() {
+        return Hash.toHex(digest != null ? digest : Hash.digest(json()));
+    }
+
+    public boolean isStale() {
+        return System.currentTimeMillis() >= softExpiresAt;
+    }
+
+    /**
+     * Probabilistic early refresh (XFetch): the closer to the soft expiry and the more
+     * expensive the value was to compute, the more likely a reader refreshes it early.
+     * Spreads the refreshes of a hot key instead of all readers hitting it at once.
+     */
+    public boolean shouldRefresh(double beta) {
+        if (softExpiresAt == Long.MAX_VALUE) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble(); // (0, 1]
+        double earlyMillis = -computeMillis * beta * Math.log(random);
+        return System.currentTimeMillis() + earlyMillis >= softExpiresAt;
+    }
+}
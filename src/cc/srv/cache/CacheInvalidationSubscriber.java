@@ -0,0 +1,66 @@
+package cc.srv.cache;
+
+import java.util.logging.Logger;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * Listens on the Redis invalidation channel and drops the matching L1 entries,
+ * so every replica of the app forgets a key as soon as one of them changes it.
+ * One daemon thread per JVM, started lazily by CacheService.
+ */
+public class CacheInvalidationSubscriber extends JedisPubSub {
+    private static final Logger logger = Logger.getLogger(CacheInvalidationSubscriber.class.getName());
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private static volatile boolean started;
+
+    /**
+     * Called on every L1 access: after the first call it is a single volatile read, the
+     * lock is only taken while the thread does not exist yet.
+     */
+    public static void start() {
+        if (started)
+            return;
+
+        synchronized (CacheInvalidationSubscriber.class) {
+            if (started)
+                return;
+            CacheInvalidationSubscriber subscriber = new CacheInvalidationSubscriber();
+            Thread thread = new Thread(subscriber::listen, "cache-invalidation-subscriber");
+            thread.setDaemon(true);
+            thread.start();
+            started = true;
+        }
+    }
+
+    private void listen() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+                // subscribe() blocks until the connection drops
+                jedis.subscribe(this, CacheService.INVALIDATION_CHANNEL);
+            } catch (Exception e) {
+                logger.warning("Invalidation subscriber disconnected: " + e.getMessage());
+            }
+            // messages may have been missed while disconnected
+            CacheService.clearLocalCache();
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(String channel, int subscribedChannels) {
+        logger.info("Subscribed to cache invalidation channel: " + channel);
+        // entries put in L1 before the subscription was live may have missed an invalidation
+        CacheService.clearLocalCache();
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+        CacheService.onInvalidationMessage(message);
+    }
+}
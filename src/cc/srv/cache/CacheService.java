@@ -1,16 +1,34 @@
 package cc.srv.cache;
 
 import cc.srv.data.User;
-import java.util.Base64;
 import cc.srv.data.LegoSet;
 import cc.srv.data.Auction;
+import cc.srv.data.AuctionSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.ZAddParams;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class CacheService {
     private static final ObjectMapper mapper = new ObjectMapper();
@@ -19,16 +37,41 @@ public class CacheService {
     private static final int TTL_SHORT = 5;    // Données volatiles (auctions)
     private static final int TTL_MEDIUM = 30;  // Données semi-stables  
     private static final int TTL_LONG = 60;    // Données stables (legosets)
+    // Les TTL ci-dessus sont des expirations "soft" : pour les clés lues par getOrLoad, Redis
+    // garde l'entrée STALE_FACTOR fois plus longtemps pour pouvoir la servir pendant son
+    // rafraîchissement. Les autres lectures (getTiered, multi-get) s'arrêtent au TTL soft.
+    private static final int STALE_FACTOR = 2;
+    private static final double EARLY_REFRESH_BETA = Double.parseDouble(System.getenv().getOrDefault("CACHE_EARLY_REFRESH_BETA", "1.0"));
     
     // Préfixes des clés
     private static final String USER_PREFIX = "user:";
     private static final String LEGOSET_PREFIX = "legoset:";
     private static final String AUCTION_PREFIX = "auction:";
     private static final String AUCTION_SEARCH_PREFIX = "auction_search:";
-    private static final String RECENT_LEGOSETS = "recent_legosets";
     private static final String USER_LEGOSETS_PREFIX = "user_legosets:";
     private static final String ACTIVE_AUCTIONS = "active_auctions";
-    private static final String RECENT_AUCTIONS = "recent_auctions";
+    private static final String AUCTIONS_BY_LEGOSET_PREFIX = "auctions_by_legoset:";
+    // Les vues liste sont cachées en résumés : la projection fait partie de la clé, pour qu'une
+    // entrée d'une autre forme (ancien format complet, autre projection) ne soit jamais servie
+    private static final String SUMMARY_VIEW = "summary:";
+    // entités servies par getOrLoad (stale-while-revalidate)
+    private static final Set<String> REVALIDATED_PREFIXES = Set.of(USER_PREFIX, LEGOSET_PREFIX, AUCTION_PREFIX);
+
+    // L1 (in-JVM) near-cache, one bounded tier per entity prefix
+    static final String INVALIDATION_CHANNEL = "cache:invalidate";
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final boolean L1_ENABLED = Boolean.parseBoolean(System.getenv().getOrDefault("L1_CACHE_ENABLED", "true"));
+    private static final long L1_MAX_BYTES = Long.parseLong(System.getenv().getOrDefault("L1_CACHE_MAX_BYTES", String.valueOf(8 * 1024 * 1024)));
+    private static final long L1_TTL_MS = Long.parseLong(System.getenv().getOrDefault("L1_CACHE_TTL_SECONDS", "30")) * 1000;
+
+    private static final Map<String, LocalCache> localTiers = new LinkedHashMap<>();
+    private static final Map<String, CacheStats> redisStats = new LinkedHashMap<>();
+    static {
+        for (String prefix : new String[] { USER_PREFIX, LEGOSET_PREFIX, AUCTION_PREFIX }) {
+            localTiers.put(prefix, new LocalCache(prefix, L1_MAX_BYTES, L1_TTL_MS));
+            redisStats.put(prefix, new CacheStats());
+        }
+    }
     
     // === USER CACHE ===
     
@@ -38,10 +81,9 @@ public class CacheService {
             return;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        try {
             String key = USER_PREFIX + user.getId();
-            String userJson = mapper.writeValueAsString(user);
-            jedis.setex(key, TTL_MEDIUM * 60, userJson);
+            putTiered(key, TTL_MEDIUM * 60, mapper.writeValueAsBytes(user));
             System.out.println("User cached: " + user.getId());
         } catch (Exception e) {
             System.err.println("Error caching user " + user.getId() + ": " + e.getMessage());
@@ -53,12 +95,11 @@ public class CacheService {
             return null;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-            String key = USER_PREFIX + userId;
-            String userJson = jedis.get(key);
-            if (userJson != null && !userJson.trim().isEmpty()) {
+        try {
+            CacheEntry userJson = getFresh(USER_PREFIX + userId);
+            if (userJson != null) {
                 System.out.println("User from cache: " + userId);
-                return mapper.readValue(userJson, User.class);
+                return userJson.read(mapper, User.class);
             }
             return null;
         } catch (Exception e) {
@@ -77,6 +118,7 @@ public class CacheService {
             String userLegoSetsKey = USER_LEGOSETS_PREFIX + userId;
             
             jedis.del(userKey, userLegoSetsKey);
+            invalidateLocal(jedis, userKey);
             System.out.println("User cache invalidated: " + userId);
         } catch (Exception e) {
             System.err.println("Error invalidating user cache " + userId + ": " + e.getMessage());
@@ -91,10 +133,9 @@ public class CacheService {
             return;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        try {
             String key = LEGOSET_PREFIX + legoSet.getId();
-            String legoSetJson = mapper.writeValueAsString(legoSet);
-            jedis.setex(key, TTL_LONG * 60, legoSetJson);
+            putTiered(key, TTL_LONG * 60, mapper.writeValueAsBytes(legoSet));
             System.out.println("LegoSet cached: " + legoSet.getId());
         } catch (Exception e) {
             System.err.println("Error caching legoSet " + legoSet.getId() + ": " + e.getMessage());
@@ -106,12 +147,11 @@ public class CacheService {
             return null;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-            String key = LEGOSET_PREFIX + legoSetId;
-            String legoSetJson = jedis.get(key);
-            if (legoSetJson != null && !legoSetJson.trim().isEmpty()) {
+        try {
+            CacheEntry legoSetJson = getFresh(LEGOSET_PREFIX + legoSetId);
+            if (legoSetJson != null) {
                 System.out.println("LegoSet from cache: " + legoSetId);
-                return mapper.readValue(legoSetJson, LegoSet.class);
+                return legoSetJson.read(mapper, LegoSet.class);
             }
             return null;
         } catch (Exception e) {
@@ -120,6 +160,115 @@ public class CacheService {
         }
     }
     
+    /**
+     * Multi-get: L1 first, then a single Redis MGET for the remaining ids.
+     * Returns the LegoSets found, keyed by id; missing ids are simply absent.
+     */
+    public static Map<String, LegoSet> getCachedLegoSets(Collection<String> legoSetIds) {
+        return getCachedEntities(LEGOSET_PREFIX, legoSetIds, LegoSet.class);
+    }
+    
+    /**
+     * Back-fill several LegoSets in one Redis pipeline
+     */
+    public static void cacheLegoSets(Collection<LegoSet> legoSets) {
+        if (legoSets == null || legoSets.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (LegoSet legoSet : legoSets) {
+            ids.add(legoSet != null ? legoSet.getId() : null);
+        }
+        cacheEntities(LEGOSET_PREFIX, TTL_LONG * 60, legoSets, ids);
+    }
+
+    // same for auctions, used to resolve the pages of the auction indexes (see ListIndexes)
+    public static Map<String, Auction> getCachedAuctions(Collection<String> auctionIds) {
+        return getCachedEntities(AUCTION_PREFIX, auctionIds, Auction.class);
+    }
+
+    private static <T> Map<String, T> getCachedEntities(String prefix, Collection<String> ids, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return found;
+        }
+        
+        try {
+            LocalCache local = localTierFor(prefix);
+            List<String> remaining = new ArrayList<>();
+            for (String id : ids) {
+                CacheEntry entry = local != null ? CacheEntry.unwrap(local.get(prefix + id)) : null;
+                // pas de revalidation ici : une entrée périmée est un miss, rechargée en base
+                if (entry != null && !entry.isStale()) {
+                    found.put(id, entry.read(mapper, type));
+                } else {
+                    remaining.add(id);
+                }
+            }
+            if (remaining.isEmpty()) {
+                return found;
+            }
+            
+            byte[][] keys = new byte[remaining.size()][];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = (prefix + remaining.get(i)).getBytes(StandardCharsets.UTF_8);
+            }
+            List<byte[]> values;
+            try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+                values = jedis.mget(keys);
+            }
+            CacheStats stats = redisStats.get(prefix);
+            for (int i = 0; i < values.size(); i++) {
+                byte[] json = values.get(i);
+                CacheEntry entry = CacheEntry.unwrap(json);
+                if (entry == null || entry.isStale()) {
+                    stats.miss();
+                    continue;
+                }
+                stats.hit();
+                if (local != null) {
+                    local.put(prefix + remaining.get(i), json);
+                }
+                found.put(remaining.get(i), entry.read(mapper, type));
+            }
+            System.out.println("Multi-get " + prefix + " from cache: " + found.size() + "/" + ids.size());
+        } catch (Exception e) {
+            System.err.println("Error getting cached entries " + prefix + ": " + e.getMessage());
+        }
+        return found;
+    }
+
+    // ids.get(i) is the id of the i-th entity (null ones are skipped)
+    private static void cacheEntities(String prefix, int ttlSeconds, Collection<?> entities, List<String> ids) {
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            LocalCache local = localTierFor(prefix);
+            long softExpiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+            Pipeline pipeline = jedis.pipelined();
+            int i = 0;
+            for (Object entity : entities) {
+                String id = ids.get(i++);
+                if (entity == null || id == null) {
+                    continue;
+                }
+                String key = prefix + id;
+                byte[] json = CacheEntry.wrap(mapper.writeValueAsBytes(entity), softExpiresAt, 0);
+                pipeline.setex(key.getBytes(StandardCharsets.UTF_8), hardTtl(key, ttlSeconds), json);
+                if (local != null) {
+                    local.put(key, json);
+                    pipeline.publish(INVALIDATION_CHANNEL, NODE_ID + "|" + key);
+                }
+            }
+            pipeline.sync();
+            System.out.println("Cached " + prefix + " entries: " + entities.size());
+        } catch (Exception e) {
+            System.err.println("Error caching " + prefix + " entries: " + e.getMessage());
+        }
+    }
+    
     public static void invalidateLegoSet(String legoSetId) {
         if (legoSetId == null || legoSetId.trim().isEmpty()) {
             return;
@@ -128,8 +277,7 @@ public class CacheService {
         try (Jedis jedis = RedisCache.getCachePool().getResource()) {
             String legoSetKey = LEGOSET_PREFIX + legoSetId;
             jedis.del(legoSetKey);
-            // Invalider les listes globales
-            jedis.del(RECENT_LEGOSETS);
+            invalidateLocal(jedis, legoSetKey);
             System.out.println("LegoSet cache invalidated: " + legoSetId);
         } catch (Exception e) {
             System.err.println("Error invalidating legoSet cache " + legoSetId + ": " + e.getMessage());
@@ -144,10 +292,9 @@ public class CacheService {
             return;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        try {
             String key = AUCTION_PREFIX + auction.getId();
-            String auctionJson = mapper.writeValueAsString(auction);
-            jedis.setex(key, TTL_SHORT * 60, auctionJson); // Court TTL car données changeantes
+            putTiered(key, TTL_SHORT * 60, mapper.writeValueAsBytes(auction)); // Court TTL car données changeantes
             System.out.println("Auction cached: " + auction.getId());
         } catch (Exception e) {
             System.err.println("Error caching auction " + auction.getId() + ": " + e.getMessage());
@@ -159,12 +306,11 @@ public class CacheService {
             return null;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-            String key = AUCTION_PREFIX + auctionId;
-            String auctionJson = jedis.get(key);
-            if (auctionJson != null && !auctionJson.trim().isEmpty()) {
+        try {
+            CacheEntry auctionJson = getFresh(AUCTION_PREFIX + auctionId);
+            if (auctionJson != null) {
                 System.out.println("Auction from cache: " + auctionId);
-                return mapper.readValue(auctionJson, Auction.class);
+                return auctionJson.read(mapper, Auction.class);
             }
             return null;
         } catch (Exception e) {
@@ -173,38 +319,22 @@ public class CacheService {
         }
     }
     
-    public static List<Auction> getCachedRecentAuctions() {
-    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String auctionsJson = jedis.get("recent_auctions");
-        if (auctionsJson != null && !auctionsJson.trim().isEmpty()) {
-            System.out.println("Recent Auctions from cache");
-            return mapper.readValue(auctionsJson, new TypeReference<List<Auction>>(){});
-        }
-        return null;
-    } catch (Exception e) {
-        System.err.println("Error getting cached recent auctions: " + e.getMessage());
-        return null;
-    }
-}
+    // === RECENT LISTS (servies par ListIndexes, ids de page pour SingleFlight) ===
 
-public static void cacheRecentAuctions(List<Auction> auctions) {
-    if (auctions == null) {
-        System.err.println("Cannot cache null recent auctions list");
-        return;
+    /**
+     * Page id for the legacy offset pagination (st/len)
+     */
+    public static String recentPageId(int start, int limit) {
+        return "st:" + start + ":" + limit;
     }
-    
-    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String auctionsJson = mapper.writeValueAsString(auctions);
-        
-        // TTL court car la liste des récents change fréquemment
-        jedis.setex("recent_auctions", TTL_SHORT * 60, auctionsJson);
-        
-        System.out.println("Recent Auctions cached (" + auctions.size() + " items)");
-        
-    } catch (Exception e) {
-        System.err.println("Error caching recent auctions: " + e.getMessage());
+
+    /**
+     * Page id for keyset pagination, a null/empty cursor being the first page
+     */
+    public static String recentPageId(String cursor, int limit) {
+        return "c:" + (cursor == null || cursor.isEmpty() ? "first" : cursor) + ":" + limit;
     }
-}
+
     public static void invalidateAuction(String auctionId) {
         if (auctionId == null || auctionId.trim().isEmpty()) {
             return;
@@ -215,12 +345,44 @@ public static void cacheRecentAuctions(List<Auction> auctions) {
             jedis.del(auctionKey);
             // Invalider les recherches qui pourraient contenir cette auction
             jedis.del(ACTIVE_AUCTIONS);
+            invalidateLocal(jedis, auctionKey);
             System.out.println("Auction cache invalidated: " + auctionId);
         } catch (Exception e) {
             System.err.println("Error invalidating auction cache " + auctionId + ": " + e.getMessage());
         }
     }
     
+    /**
+     * Drops a batch of closed auctions, and the per-LegoSet lists holding them, in one
+     * pipelined round trip. The list indexes are updated by the caller (see ListIndexes).
+     */
+    public static void invalidateClosedAuctions(Collection<AuctionSummary> closed) {
+        if (closed == null || closed.isEmpty()) {
+            return;
+        }
+
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            LocalCache local = localTierFor(AUCTION_PREFIX);
+            Set<String> legoSetIds = new HashSet<>();
+            Pipeline pipeline = jedis.pipelined();
+            for (AuctionSummary auction : closed) {
+                String auctionKey = AUCTION_PREFIX + auction.getId();
+                pipeline.del(auctionKey);
+                if (local != null) {
+                    local.invalidate(auctionKey);
+                    pipeline.publish(INVALIDATION_CHANNEL, NODE_ID + "|" + auctionKey);
+                }
+                if (auction.getLegoSetId() != null && legoSetIds.add(auction.getLegoSetId())) {
+                    pipeline.del(auctionsByLegoSetKey(auction.getLegoSetId()), AUCTIONS_BY_LEGOSET_PREFIX + auction.getLegoSetId());
+                }
+            }
+            pipeline.del(ACTIVE_AUCTIONS);
+            pipeline.sync();
+        } catch (Exception e) {
+            System.err.println("Error invalidating closed auctions: " + e.getMessage());
+        }
+    }
+    
     // === AUCTION SEARCH CACHE ===
     
     public static void cacheAuctionSearch(String legoSetId, List<Auction> auctions) {
@@ -259,21 +421,7 @@ public static void cacheRecentAuctions(List<Auction> auctions) {
     }
     
   
-    public static List<LegoSet> getCachedRecentLegoSets() {
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-            String legoSetsJson = jedis.get(RECENT_LEGOSETS);
-            if (legoSetsJson != null && !legoSetsJson.trim().isEmpty()) {
-                System.out.println("Recent LegoSets from cache");
-                return mapper.readValue(legoSetsJson, new TypeReference<List<LegoSet>>(){});
-            }
-            return null;
-        } catch (Exception e) {
-            System.err.println("Error getting cached recent legosets: " + e.getMessage());
-            return null;
-        }
-    }
-
-    public static void cacheAuctionsByLegoSet(String legoSetId, List<Auction> auctions) {
+    public static void cacheAuctionsByLegoSet(String legoSetId, List<AuctionSummary> auctions) {
     if (legoSetId == null || legoSetId.trim().isEmpty()) {
         System.err.println("Cannot cache auctions for null or empty legoSetId");
         return;
@@ -285,7 +433,7 @@ public static void cacheRecentAuctions(List<Auction> auctions) {
     }
     
     try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String key = "auctions_by_legoset:" + legoSetId;
+        String key = auctionsByLegoSetKey(legoSetId);
         String auctionsJson = mapper.writeValueAsString(auctions);
         
         // TTL court car les données d'auctions changent fréquemment
@@ -297,24 +445,6 @@ public static void cacheRecentAuctions(List<Auction> auctions) {
         System.err.println(" Error caching auctions for LegoSet " + legoSetId + ": " + e.getMessage());
     }
 }
-public static void cacheRecentLegoSets(List<LegoSet> legoSets) {
-    if (legoSets == null) {
-        System.err.println("Cannot cache null recent legosets list");
-        return;
-    }
-    
-    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String legoSetsJson = mapper.writeValueAsString(legoSets);
-        
-        // TTL court car la liste des récents change fréquemment
-        jedis.setex("recent_legosets", TTL_SHORT * 60, legoSetsJson);
-        
-        System.out.println("Recent LegoSets cached (" + legoSets.size() + " items)");
-        
-    } catch (Exception e) {
-        System.err.println(" Error caching recent legosets: " + e.getMessage());
-    }
-}
     
     // === USER LEGOSETS COLLECTION ===
     
@@ -324,10 +454,9 @@ public static void cacheRecentLegoSets(List<LegoSet> legoSets) {
             return;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        try {
             String key = USER_LEGOSETS_PREFIX + userId;
-            String legoSetsJson = mapper.writeValueAsString(legoSets);
-            jedis.setex(key, TTL_MEDIUM * 60, legoSetsJson);
+            putTiered(key, TTL_MEDIUM * 60, mapper.writeValueAsBytes(legoSets));
             System.out.println("User LegoSets cached for: " + userId);
         } catch (Exception e) {
             System.err.println("Error caching user legosets for " + userId + ": " + e.getMessage());
@@ -339,12 +468,11 @@ public static void cacheRecentLegoSets(List<LegoSet> legoSets) {
             return null;
         }
         
-        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-            String key = USER_LEGOSETS_PREFIX + userId;
-            String legoSetsJson = jedis.get(key);
-            if (legoSetsJson != null && !legoSetsJson.trim().isEmpty()) {
+        try {
+            CacheEntry legoSetsJson = getFresh(USER_LEGOSETS_PREFIX + userId);
+            if (legoSetsJson != null) {
                 System.out.println("User LegoSets from cache: " + userId);
-                return mapper.readValue(legoSetsJson, new TypeReference<List<LegoSet>>(){});
+                return legoSetsJson.read(mapper, new TypeReference<List<LegoSet>>(){});
             }
             return null;
         } catch (Exception e) {
@@ -352,12 +480,30 @@ public static void cacheRecentLegoSets(List<LegoSet> legoSets) {
             return null;
         }
     }
+
+    /**
+     * Raw JSON of a user's cached LegoSets, ready to be written to the response as-is
+     */
+    public static byte[] getCachedUserLegoSetsJson(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return null;
+        }
+        
+        try {
+            return getTiered(USER_LEGOSETS_PREFIX + userId);
+        } catch (Exception e) {
+            System.err.println("Error getting cached user legosets for " + userId + ": " + e.getMessage());
+            return null;
+        }
+    }
     
     // === UTILITY METHODS ===
     
     public static void clearAllCache() {
         try (Jedis jedis = RedisCache.getCachePool().getResource()) {
             jedis.flushDB();
+            clearLocalCache();
+            jedis.publish(INVALIDATION_CHANNEL, NODE_ID + "|*");
             System.out.println("All cache cleared");
         } catch (Exception e) {
             System.err.println("Error clearing all cache: " + e.getMessage());
@@ -406,17 +552,17 @@ public static void cacheRecentLegoSets(List<LegoSet> legoSets) {
    /**
  *get auctions for a specific LegoSet from cache
  */
-public static List<Auction> getCachedAuctionsByLegoSet(String legoSetId) {
+public static List<AuctionSummary> getCachedAuctionsByLegoSet(String legoSetId) {
     if (legoSetId == null || legoSetId.trim().isEmpty()) {
         return null;
     }
     
     try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String key = "auctions_by_legoset:" + legoSetId;
+        String key = auctionsByLegoSetKey(legoSetId);
         String auctionsJson = jedis.get(key);
         if (auctionsJson != null && !auctionsJson.trim().isEmpty()) {
             System.out.println("Auctions for LegoSet " + legoSetId + " served from CACHE");
-            return mapper.readValue(auctionsJson, new TypeReference<List<Auction>>(){});
+            return mapper.readValue(auctionsJson, new TypeReference<List<AuctionSummary>>(){});
         }
         return null;
     } catch (Exception e) {
@@ -425,16 +571,6 @@ public static List<Auction> getCachedAuctionsByLegoSet(String legoSetId) {
     }
 }
 
-public static void invalidateRecentLegoSets() {
-    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        jedis.del("recent_legosets");
-        System.out.println("Recent LegoSets cache invalidated");
-    } catch (Exception e) {
-        System.err.println("Error invalidating recent legosets cache: " + e.getMessage());
-    }
-}
-
-
 /**
  * Invalidate auctions cache for a specific LegoSet
  */
@@ -444,8 +580,8 @@ public static void invalidateAuctionsByLegoSet(String legoSetId) {
     }
     
     try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String key = "auctions_by_legoset:" + legoSetId;
-        jedis.del(key);
+        // l'ancienne clé (liste complète) expire d'elle-même, on la supprime quand même
+        jedis.del(auctionsByLegoSetKey(legoSetId), AUCTIONS_BY_LEGOSET_PREFIX + legoSetId);
         System.out.println("Auctions cache invalidated for LegoSet: " + legoSetId);
     } catch (Exception e) {
         System.err.println("Error invalidating auctions cache for LegoSet " + legoSetId + ": " + e.getMessage());
@@ -453,26 +589,85 @@ public static void invalidateAuctionsByLegoSet(String legoSetId) {
 }
 
 // === MEDIA CACHE ===
+// Media are stored as raw bytes in a binary hash (content + contentType), no Base64.
+// Files above MEDIA_MAX_OBJECT_BYTES bypass the cache. The total size of cached media is
+// tracked in Redis (size per id + running total) and kept under MEDIA_MAX_BYTES by evicting
+// the least recently served media first.
+
+private static final String MEDIA_PREFIX = "media:";
+private static final String MEDIA_INDEX = "media_cache:lru";     // zset id -> last access
+private static final String MEDIA_SIZES = "media_cache:sizes";   // hash id -> bytes
+private static final String MEDIA_TOTAL = "media_cache:bytes";   // running total
+private static final byte[] MEDIA_CONTENT_FIELD = "content".getBytes(StandardCharsets.UTF_8);
+private static final byte[] MEDIA_TYPE_FIELD = "contentType".getBytes(StandardCharsets.UTF_8);
+private static final long MEDIA_MAX_OBJECT_BYTES = Long.parseLong(System.getenv().getOrDefault("MEDIA_CACHE_MAX_OBJECT_BYTES", String.valueOf(2 * 1024 * 1024)));
+private static final long MEDIA_MAX_BYTES = Long.parseLong(System.getenv().getOrDefault("MEDIA_CACHE_MAX_BYTES", String.valueOf(256L * 1024 * 1024)));
+private static final CacheStats mediaStats = new CacheStats();
+
+// store + account + evict the oldest media until the total fits in the budget, atomically
+// KEYS: media key, index, sizes, total   ARGV: content, contentType, ttl, id, size, now, budget, prefix
+private static final String MEDIA_PUT_SCRIPT =
+    "local old = redis.call('HGET', KEYS[3], ARGV[4]) " +
+    "if old then redis.call('DECRBY', KEYS[4], old) end " +
+    "redis.call('HSET', KEYS[1], 'content', ARGV[1], 'contentType', ARGV[2]) " +
+    "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+    "redis.call('HSET', KEYS[3], ARGV[4], ARGV[5]) " +
+    "redis.call('ZADD', KEYS[2], ARGV[6], ARGV[4]) " +
+    "local total = redis.call('INCRBY', KEYS[4], ARGV[5]) " +
+    "local budget = tonumber(ARGV[7]) " +
+    "while total > budget do " +
+    "  local oldest = redis.call('ZRANGE', KEYS[2], 0, 0)[1] " +
+    "  if not oldest or oldest == ARGV[4] then break end " +
+    "  local size = redis.call('HGET', KEYS[3], oldest) or 0 " +
+    "  redis.call('DEL', ARGV[8] .. oldest) " +
+    "  redis.call('HDEL', KEYS[3], oldest) " +
+    "  redis.call('ZREM', KEYS[2], oldest) " +
+    "  total = redis.call('DECRBY', KEYS[4], size) " +
+    "end " +
+    "return total";
+
+// KEYS: media key, index, sizes, total   ARGV: id
+private static final String MEDIA_DELETE_SCRIPT =
+    "local size = redis.call('HGET', KEYS[3], ARGV[1]) " +
+    "if size then redis.call('DECRBY', KEYS[4], size) end " +
+    "redis.call('HDEL', KEYS[3], ARGV[1]) " +
+    "redis.call('ZREM', KEYS[2], ARGV[1]) " +
+    "return redis.call('DEL', KEYS[1])";
 
 /**
- * Cache un média (contenu binaire)
+ * Whether a media of this size would be kept in the cache
+ */
+public static boolean isMediaCacheable(long size) {
+    return size <= MEDIA_MAX_OBJECT_BYTES && size <= MEDIA_MAX_BYTES;
+}
+
+/**
+ * Cache un média (contenu binaire brut)
  */
 public static void cacheMedia(String mediaId, byte[] content, String contentType) {
     if (mediaId == null || content == null) {
         System.err.println("Cannot cache null mediaId or content");
         return;
     }
+    if (!isMediaCacheable(content.length)) {
+        System.out.println("Media " + mediaId + " too large to cache (" + content.length + " bytes)");
+        return;
+    }
     
     try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        // Stocker le contenu et le contentType
-        String key = "media:" + mediaId;
-        Map<String, String> mediaData = new HashMap<>();
-        mediaData.put("content", Base64.getEncoder().encodeToString(content));
-        mediaData.put("contentType", contentType != null ? contentType : "application/octet-stream");
-        
+        String type = contentType != null ? contentType : "application/octet-stream";
+        List<byte[]> args = new ArrayList<>();
+        args.add(content);
+        args.add(type.getBytes(StandardCharsets.UTF_8));
         // TTL long car les médias ne changent pas
-        jedis.hset(key, mediaData);
-        jedis.expire(key, TTL_LONG * 60);
+        args.add(String.valueOf(TTL_LONG * 60).getBytes(StandardCharsets.UTF_8));
+        args.add(mediaId.getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(content.length).getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+        args.add(String.valueOf(MEDIA_MAX_BYTES).getBytes(StandardCharsets.UTF_8));
+        args.add(MEDIA_PREFIX.getBytes(StandardCharsets.UTF_8));
+        
+        jedis.eval(MEDIA_PUT_SCRIPT.getBytes(StandardCharsets.UTF_8), mediaKeys(mediaId), args);
         
         System.out.println("Media cached: " + mediaId + " (" + content.length + " bytes)");
         
@@ -482,22 +677,34 @@ public static void cacheMedia(String mediaId, byte[] content, String contentType
 }
 
 /**
- * Récupère un média en cache
+ * Récupère un média en cache, ou null
  */
-public static Map<String, String> getCachedMedia(String mediaId) {
+public static CachedMedia getCachedMedia(String mediaId) {
     if (mediaId == null || mediaId.trim().isEmpty()) {
         return null;
     }
     
     try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String key = "media:" + mediaId;
-        Map<String, String> mediaData = jedis.hgetAll(key);
+        Map<byte[], byte[]> fields = jedis.hgetAll((MEDIA_PREFIX + mediaId).getBytes(StandardCharsets.UTF_8));
         
-        if (mediaData != null && !mediaData.isEmpty() && mediaData.containsKey("content")) {
-            System.out.println(" Media " + mediaId + " served from CACHE");
-            return mediaData;
+        byte[] content = null;
+        String contentType = "application/octet-stream";
+        for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+            if (Arrays.equals(field.getKey(), MEDIA_CONTENT_FIELD)) {
+                content = field.getValue();
+            } else if (Arrays.equals(field.getKey(), MEDIA_TYPE_FIELD)) {
+                contentType = new String(field.getValue(), StandardCharsets.UTF_8);
+            }
         }
-        return null;
+        if (content == null) {
+            mediaStats.miss();
+            return null;
+        }
+        mediaStats.hit();
+        // bump the LRU position, only if the media is still tracked
+        jedis.zadd(MEDIA_INDEX, System.currentTimeMillis(), mediaId, ZAddParams.zAddParams().xx());
+        System.out.println(" Media " + mediaId + " served from CACHE");
+        return new CachedMedia(content, contentType);
         
     } catch (Exception e) {
         System.err.println(" Error getting cached media " + mediaId + ": " + e.getMessage());
@@ -514,10 +721,10 @@ public static void invalidateMedia(String mediaId) {
     }
     
     try (Jedis jedis = RedisCache.getCachePool().getResource()) {
-        String key = "media:" + mediaId;
-        Long deleted = jedis.del(key);
+        Object deleted = jedis.eval(MEDIA_DELETE_SCRIPT.getBytes(StandardCharsets.UTF_8), mediaKeys(mediaId),
+            Collections.singletonList(mediaId.getBytes(StandardCharsets.UTF_8)));
         
-        if (deleted > 0) {
+        if (deleted instanceof Long && (Long) deleted > 0) {
             System.out.println(" Media cache invalidated: " + mediaId);
         }
         
@@ -525,4 +732,287 @@ public static void invalidateMedia(String mediaId) {
         System.err.println(" Error invalidating media cache " + mediaId + ": " + e.getMessage());
     }
 }
-}
\ No newline at end of file
+
+private static List<byte[]> mediaKeys(String mediaId) {
+    return Arrays.asList(
+        (MEDIA_PREFIX + mediaId).getBytes(StandardCharsets.UTF_8),
+        MEDIA_INDEX.getBytes(StandardCharsets.UTF_8),
+        MEDIA_SIZES.getBytes(StandardCharsets.UTF_8),
+        MEDIA_TOTAL.getBytes(StandardCharsets.UTF_8));
+}
+
+private static Map<String, Object> mediaCacheStats() {
+    Map<String, Object> result = mediaStats.toMap();
+    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        String total = jedis.get(MEDIA_TOTAL);
+        result.put("entries", jedis.zcard(MEDIA_INDEX));
+        result.put("bytes", total != null ? Long.parseLong(total) : 0L);
+    } catch (Exception e) {
+        result.put("error", e.getMessage());
+    }
+    result.put("maxBytes", MEDIA_MAX_BYTES);
+    result.put("maxObjectBytes", MEDIA_MAX_OBJECT_BYTES);
+    return result;
+}
+
+// === READ-THROUGH (STALE-WHILE-REVALIDATE) ===
+
+private static final ExecutorService refreshExecutor = Executors.newFixedThreadPool(4, runnable -> {
+    Thread thread = new Thread(runnable, "cache-refresh");
+    thread.setDaemon(true);
+    return thread;
+});
+private static final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+/**
+ * LegoSet JSON (with its ETag) from the cache, loaded and cached on a miss. A stale entry
+ * is returned immediately and refreshed in the background. Returns null if the loader
+ * finds nothing.
+ */
+public static CacheEntry getOrLoadLegoSet(String legoSetId, Supplier<LegoSet> loader) {
+    return getOrLoad(LEGOSET_PREFIX + legoSetId, TTL_LONG * 60, loader);
+}
+
+/**
+ * Same as getOrLoadLegoSet, but each load (on a miss or in the background) reads the DB and
+ * writes the cache under the auction's StripedLock, like placeBid and AuctionCloser: a load
+ * that read the auction before a bid cannot cache it after the bid's newer state.
+ */
+public static CacheEntry getOrLoadAuction(String auctionId, Supplier<Auction> loader) {
+    return getOrLoad(AUCTION_PREFIX + auctionId, TTL_SHORT * 60, loader,
+        load -> StripedLock.AUCTIONS.withLock(auctionId, load));
+}
+
+public static CacheEntry getOrLoadUser(String userId, Supplier<User> loader) {
+    return getOrLoad(USER_PREFIX + userId, TTL_MEDIUM * 60, loader);
+}
+
+// list of AuctionSummary
+private static String auctionsByLegoSetKey(String legoSetId) {
+    return AUCTIONS_BY_LEGOSET_PREFIX + SUMMARY_VIEW + legoSetId;
+}
+
+private static CacheEntry getOrLoad(String key, int ttlSeconds, Supplier<?> loader) {
+    return getOrLoad(key, ttlSeconds, loader, Supplier::get);
+}
+
+/**
+ * ordering wraps each load-and-store of the key, e.g. to run it under the lock that the
+ * writers of the key hold.
+ */
+private static CacheEntry getOrLoad(String key, int ttlSeconds, Supplier<?> loader,
+                                    Function<Supplier<CacheEntry>, CacheEntry> ordering) {
+    Supplier<CacheEntry> load = () -> ordering.apply(() -> loadAndStore(key, ttlSeconds, loader));
+    CacheEntry entry = readEntry(key);
+    if (entry != null) {
+        if (entry.isStale() || entry.shouldRefresh(EARLY_REFRESH_BETA)) {
+            refreshAsync(key, load);
+        }
+        return entry;
+    }
+
+    // miss : chargement synchrone, un seul par clé
+    return SingleFlight.load(key, load);
+}
+
+private static CacheEntry readEntry(String key) {
+    try {
+        return getTieredEntry(key);
+    } catch (Exception e) {
+        System.err.println("Error reading cache entry " + key + ": " + e.getMessage());
+        return null;
+    }
+}
+
+private static CacheEntry loadAndStore(String key, int ttlSeconds, Supplier<?> loader) {
+    long start = System.currentTimeMillis();
+    Object value = loader.get();
+    if (value == null) {
+        return null;
+    }
+    int computeMillis = (int) (System.currentTimeMillis() - start);
+
+    byte[] json;
+    try {
+        json = mapper.writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Cannot serialize " + key, e);
+    }
+    byte[] entry = CacheEntry.wrap(json, System.currentTimeMillis() + ttlSeconds * 1000L, computeMillis);
+    try {
+        putTieredEntry(key, ttlSeconds, entry);
+        System.out.println("Cache loaded: " + key + " (" + computeMillis + "ms)");
+    } catch (Exception e) {
+        System.err.println("Error caching " + key + ": " + e.getMessage());
+    }
+    return CacheEntry.unwrap(entry);
+}
+
+// at most one background refresh per key and per JVM
+private static void refreshAsync(String key, Supplier<CacheEntry> load) {
+    if (!refreshing.add(key)) {
+        return;
+    }
+    try {
+        refreshExecutor.execute(() -> {
+            try {
+                if (load.get() == null) {
+                    // n'existe plus en base
+                    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+                        jedis.del(key);
+                        invalidateLocal(jedis, key);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Error refreshing cache entry " + key + ": " + e.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    } catch (RejectedExecutionException e) {
+        refreshing.remove(key);
+    }
+}
+
+// === L1 NEAR-CACHE ===
+
+/**
+ * Read a JSON entry, L1 first then Redis, as an array of its own (copied out of the entry).
+ */
+private static byte[] getTiered(String key) {
+    CacheEntry entry = getFresh(key);
+    return entry != null ? entry.json() : null;
+}
+
+/**
+ * Read an entry that is not past its soft expiry: readers without background refresh
+ * never serve a stale value.
+ */
+private static CacheEntry getFresh(String key) {
+    CacheEntry entry = getTieredEntry(key);
+    return entry != null && !entry.isStale() ? entry : null;
+}
+
+/**
+ * Read an entry with its soft expiry, L1 first then Redis. A Redis hit is copied into L1.
+ */
+private static CacheEntry getTieredEntry(String key) {
+    LocalCache local = localTierFor(key);
+    if (local != null) {
+        byte[] value = local.get(key);
+        if (value != null) {
+            return CacheEntry.unwrap(value);
+        }
+    }
+
+    byte[] value;
+    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        value = jedis.get(key.getBytes(StandardCharsets.UTF_8));
+    }
+    CacheStats stats = redisStats.get(prefixOf(key));
+    if (value == null || value.length == 0) {
+        if (stats != null) stats.miss();
+        return null;
+    }
+    if (stats != null) stats.hit();
+    if (local != null) {
+        local.put(key, value);
+    }
+    return CacheEntry.unwrap(value);
+}
+
+private static void putTiered(String key, int ttlSeconds, byte[] json) {
+    putTieredEntry(key, ttlSeconds, CacheEntry.wrap(json, System.currentTimeMillis() + ttlSeconds * 1000L, 0));
+}
+
+/**
+ * Write a wrapped entry to Redis and L1, and tell the other replicas to drop their copy.
+ * ttlSeconds is the soft expiry; for keys served by getOrLoad Redis keeps the entry
+ * STALE_FACTOR times longer so that it can still be served while being refreshed.
+ */
+private static void putTieredEntry(String key, int ttlSeconds, byte[] entry) {
+    try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+        jedis.setex(key.getBytes(StandardCharsets.UTF_8), hardTtl(key, ttlSeconds), entry);
+        LocalCache local = localTierFor(key);
+        if (local != null) {
+            local.put(key, entry);
+            jedis.publish(INVALIDATION_CHANNEL, NODE_ID + "|" + key);
+        }
+    }
+}
+
+private static void invalidateLocal(Jedis jedis, String key) {
+    LocalCache local = localTierFor(key);
+    if (local != null) {
+        local.invalidate(key);
+        jedis.publish(INVALIDATION_CHANNEL, NODE_ID + "|" + key);
+    }
+}
+
+private static LocalCache localTierFor(String key) {
+    if (!L1_ENABLED) {
+        return null;
+    }
+    LocalCache local = localTiers.get(prefixOf(key));
+    if (local != null) {
+        CacheInvalidationSubscriber.start();
+    }
+    return local;
+}
+
+// the stale window only exists for keys that getOrLoad serves and refreshes
+private static int hardTtl(String key, int ttlSeconds) {
+    return REVALIDATED_PREFIXES.contains(prefixOf(key)) ? ttlSeconds * STALE_FACTOR : ttlSeconds;
+}
+
+private static String prefixOf(String key) {
+    int idx = key.indexOf(':');
+    return idx < 0 ? key : key.substring(0, idx + 1);
+}
+
+/**
+ * Called by the invalidation subscriber. Messages are "nodeId|key";
+ * our own messages are ignored since L1 was already updated locally.
+ */
+static void onInvalidationMessage(String message) {
+    int sep = message.indexOf('|');
+    if (sep < 0 || message.substring(0, sep).equals(NODE_ID)) {
+        return;
+    }
+    String key = message.substring(sep + 1);
+    if ("*".equals(key)) {
+        clearLocalCache();
+        return;
+    }
+    LocalCache local = localTiers.get(prefixOf(key));
+    if (local != null) {
+        local.invalidate(key);
+    }
+}
+
+static void clearLocalCache() {
+    for (LocalCache local : localTiers.values()) {
+        local.clear();
+    }
+}
+
+/**
+ * Hit/miss counters for each tier (L1 and Redis), per key prefix.
+ */
+public static Map<String, Object> getCacheStats() {
+    Map<String, Object> l1 = new LinkedHashMap<>();
+    for (LocalCache local : localTiers.values()) {
+        l1.put(local.getName(), local.stats());
+    }
+    Map<String, Object> redis = new LinkedHashMap<>();
+    for (Map.Entry<String, CacheStats> entry : redisStats.entrySet()) {
+        redis.put(entry.getKey(), entry.getValue().toMap());
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("l1Enabled", L1_ENABLED);
+    result.put("l1", l1);
+    result.put("redis", redis);
+    result.put("media", mediaCacheStats());
+    return result;
+}
+}
@@ -0,0 +1,29 @@
+package cc.srv.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit/miss counters for one cache tier.
+ */
+public class CacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public void hit() { hits.increment(); }
+    public void miss() { misses.increment(); }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+
+    public Map<String, Object> toMap() {
+        long h = getHits();
+        long m = getMisses();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+}
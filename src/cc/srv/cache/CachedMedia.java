@@ -0,0 +1,17 @@
+package cc.srv.cache;
+
+/**
+ * A media file held in Redis as raw bytes, with its content type.
+ */
+public class CachedMedia {
+    private final byte[] content;
+    private final String contentType;
+
+    public CachedMedia(byte[] content, String contentType) {
+        this.content = content;
+        this.contentType = contentType;
+    }
+
+    public byte[] getContent() { return content; }
+    public String getContentType() { return contentType; }
+}
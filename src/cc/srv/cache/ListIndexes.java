@@ -0,0 +1,294 @@
+package cc.srv.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import com.mongodb.client.MongoCursor;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.resps.Tuple;
+import cc.srv.data.Auction;
+import cc.srv.data.AuctionSummary;
+import cc.srv.data.LegoSet;
+import cc.srv.data.LegoSetSummary;
+import cc.srv.data.Page;
+import cc.srv.db.MongoDBLayer;
+import cc.srv.db.PageCursor;
+
+/**
+ * The list views kept as sorted sets of ids: recent LegoSets, recent auctions, auctions
+ * ending soon, auctions with the highest bids. Each write updates only the members it
+ * touches (create, bid, close) instead of dropping whole cached lists, and a page
+ * is a range query followed by a multi-get of the entities.
+ *
+ * An index missing from Redis (first start, eviction, flush) is rebuilt from MongoDB in the
+ * background by a single replica; meanwhile ready() is false and callers read from the DB.
+ */
+public class ListIndexes {
+    private static final Logger logger = Logger.getLogger(ListIndexes.class.getName());
+
+    // score = createdAt
+    public static final SortedIndex RECENT_LEGOSETS = new SortedIndex("legosets:recent");
+    // score = closeDate, same order as MongoDBLayer.getRecentAuctions
+    public static final SortedIndex RECENT_AUCTIONS = new SortedIndex("auctions:recent");
+    // active auctions only, score = closeDate
+    public static final SortedIndex ENDING_SOON = new SortedIndex("auctions:ending");
+    // active auctions with at least one bid, score = highest bid amount
+    public static final SortedIndex TOP_BIDS = new SortedIndex("auctions:topbids");
+
+    private static final long REBUILD_LEASE_MS = 5 * 60_000;
+    private static final int REBUILD_BATCH = 1000;
+    // a rebuild reads the DB while the hooks keep writing: it adds the ids the hooks have not
+    // written yet and never moves one back (a date is fixed, a highest bid only goes up)
+    private static final ZAddParams ADD_ONLY = ZAddParams.zAddParams().nx();
+    private static final ZAddParams RAISE_ONLY = ZAddParams.zAddParams().gt();
+
+    private static final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "list-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // rebuilds queued or running on this pod, one per group of indexes
+    private static final Set<String> pendingRebuilds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * True when the index can serve reads. If it is missing, schedules its rebuild and
+     * returns false: the caller falls back to MongoDB for this request.
+     */
+    public static boolean ready(SortedIndex index) {
+        try {
+            if (index.isReady()) {
+                return true;
+            }
+            String group = index == RECENT_LEGOSETS ? "legosets" : "auctions";
+            if (pendingRebuilds.add(group)) {
+                rebuildExecutor.execute(() -> {
+                    try {
+                        if (index == RECENT_LEGOSETS) {
+                            rebuildLegoSets();
+                        } else {
+                            rebuildAuctions();
+                        }
+                    } finally {
+                        pendingRebuilds.remove(group);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.warning("List index " + index.key() + " unavailable: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // ---------------- write hooks ---------------- //
+
+    public static void legoSetSaved(LegoSet legoSet) {
+        if (legoSet == null || legoSet.getCreatedAt() == null) {
+            return;
+        }
+        try {
+            RECENT_LEGOSETS.put(legoSet.getId(), legoSet.getCreatedAt().getTime());
+        } catch (Exception e) {
+            logger.warning("Error indexing legoSet " + legoSet.getId() + ": " + e.getMessage());
+        }
+    }
+
+    public static void legoSetDeleted(String legoSetId) {
+        try {
+            RECENT_LEGOSETS.remove(legoSetId);
+        } catch (Exception e) {
+            logger.warning("Error unindexing legoSet " + legoSetId + ": " + e.getMessage());
+        }
+    }
+
+    public static void auctionCreated(Auction auction) {
+        if (auction == null || auction.getCloseDate() == null) {
+            return;
+        }
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.zadd(RECENT_AUCTIONS.key(), auction.getCloseDate().getTime(), auction.getId());
+            if ("ACTIVE".equals(auction.getStatus())) {
+                pipeline.zadd(ENDING_SOON.key(), auction.getCloseDate().getTime(), auction.getId());
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            logger.warning("Error indexing auction " + auction.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the auction in the top-bids index; called with the auction returned by the bid
+     * write, under the auction's lock so that amounts only go up.
+     */
+    public static void bidPlaced(Auction auction) {
+        if (auction == null || auction.getCurrentWinningBid() == null) {
+            return;
+        }
+        try {
+            TOP_BIDS.put(auction.getId(), auction.getCurrentWinningBid().getAmount());
+        } catch (Exception e) {
+            logger.warning("Error indexing bid of auction " + auction.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closed auctions leave the views of active auctions (one pipelined round trip); they
+     * stay in the recent one.
+     */
+    public static void auctionsClosed(Collection<String> auctionIds) {
+        if (auctionIds.isEmpty()) {
+            return;
+        }
+        String[] ids = auctionIds.toArray(new String[0]);
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.zrem(ENDING_SOON.key(), ids);
+            pipeline.zrem(TOP_BIDS.key(), ids);
+            pipeline.sync();
+        } catch (Exception e) {
+            logger.warning("Error unindexing closed auctions: " + e.getMessage());
+        }
+    }
+
+    // ---------------- reads ---------------- //
+
+    /**
+     * Entities of one page of an index, in index order. Ids that no longer resolve (deleted)
+     * or that fail keep (e.g. an auction closed while its hook was lost) are removed from
+     * the index on the way, so a missed write heals on the next read.
+     */
+    public static <T> List<T> resolve(SortedIndex index, List<Tuple> entries, Function<List<String>, List<T>> loader,
+                                      Function<T, String> idOf, Predicate<T> keep) {
+        List<String> ids = SortedIndex.ids(entries);
+        List<T> loaded = ids.isEmpty() ? new ArrayList<>() : loader.apply(ids);
+        Map<String, T> found = new HashMap<>();
+        for (T item : loaded) {
+            found.put(idOf.apply(item), item);
+        }
+        List<T> items = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        for (String id : ids) {
+            T item = found.get(id);
+            if (item != null && keep.test(item)) {
+                items.add(item);
+            } else {
+                stale.add(id);
+            }
+        }
+        // nothing resolved at all looks like the DB being down, not like deletes: keep the ids
+        if (!stale.isEmpty() && !found.isEmpty()) {
+            try {
+                index.remove(stale.toArray(new String[0]));
+            } catch (Exception e) {
+                logger.warning("Error removing stale ids from " + index.key() + ": " + e.getMessage());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * One page of an index sorted by date, newest first, in the shapes of the DB listings:
+     * a Page whose nextCursor is (score as a date, id) for keyset pagination, a plain list
+     * for st/len. Cursors are interchangeable with the ones of the DB path.
+     */
+    public static <T> Object recentPage(SortedIndex index, boolean keyset, PageCursor after, int start, int limit,
+                                        Function<List<String>, List<T>> loader, Function<T, String> idOf) {
+        if (!keyset) {
+            return resolve(index, index.range(Math.max(start, 0), limit, true), loader, idOf, item -> true);
+        }
+        // one more entry than the page tells whether another page follows
+        List<Tuple> entries = after != null
+            ? index.after(after.getDate().getTime(), after.getId(), limit + 1)
+            : index.range(0, limit + 1, true);
+        String nextCursor = null;
+        if (entries.size() > limit) {
+            entries = entries.subList(0, limit);
+            Tuple last = entries.get(limit - 1);
+            nextCursor = new PageCursor(new Date((long) last.getScore()), last.getElement()).encode();
+        }
+        return new Page<>(resolve(index, entries, loader, idOf, item -> true), nextCursor);
+    }
+
+    // ---------------- rebuild ---------------- //
+
+    private static void rebuildLegoSets() {
+        String lease = RedisLock.tryAcquire("index-rebuild:legosets", REBUILD_LEASE_MS);
+        if (lease == null) {
+            return; // another replica is on it
+        }
+        try (Jedis jedis = RedisCache.getCachePool().getResource();
+             MongoCursor<LegoSetSummary> cursor = MongoDBLayer.getInstance().getAllLegoSetSummaries().batchSize(REBUILD_BATCH).iterator()) {
+            // ZADD NX into the live key: creates indexed meanwhile are kept, a re-add is a no-op
+            Pipeline pipeline = jedis.pipelined();
+            int count = 0;
+            while (cursor.hasNext()) {
+                LegoSetSummary legoSet = cursor.next();
+                if (legoSet.getCreatedAt() != null) {
+                    pipeline.zadd(RECENT_LEGOSETS.key(), legoSet.getCreatedAt().getTime(), legoSet.getId(), ADD_ONLY);
+                }
+                if (++count % REBUILD_BATCH == 0) {
+                    pipeline.sync();
+                }
+            }
+            RECENT_LEGOSETS.markReady(pipeline);
+            pipeline.sync();
+            logger.info("List index " + RECENT_LEGOSETS.key() + " rebuilt: " + count + " legoSets");
+        } catch (Exception e) {
+            logger.severe("Error rebuilding legoSet index: " + e.getMessage());
+        } finally {
+            RedisLock.release("index-rebuild:legosets", lease);
+        }
+    }
+
+    // the three auction indexes in one pass over the collection
+    private static void rebuildAuctions() {
+        String lease = RedisLock.tryAcquire("index-rebuild:auctions", REBUILD_LEASE_MS);
+        if (lease == null) {
+            return;
+        }
+        try (Jedis jedis = RedisCache.getCachePool().getResource();
+             MongoCursor<AuctionSummary> cursor = MongoDBLayer.getInstance().getAllAuctionSummaries().batchSize(REBUILD_BATCH).iterator()) {
+            Pipeline pipeline = jedis.pipelined();
+            int count = 0;
+            while (cursor.hasNext()) {
+                AuctionSummary auction = cursor.next();
+                if (auction.getCloseDate() != null) {
+                    long closeDate = auction.getCloseDate().getTime();
+                    pipeline.zadd(RECENT_AUCTIONS.key(), closeDate, auction.getId(), ADD_ONLY);
+                    if ("ACTIVE".equals(auction.getStatus())) {
+                        pipeline.zadd(ENDING_SOON.key(), closeDate, auction.getId(), ADD_ONLY);
+                    }
+                }
+                if ("ACTIVE".equals(auction.getStatus()) && auction.getHighestBidAmount() != null) {
+                    // a bid placed since this document was read keeps its higher score
+                    pipeline.zadd(TOP_BIDS.key(), auction.getHighestBidAmount(), auction.getId(), RAISE_ONLY);
+                }
+                if (++count % REBUILD_BATCH == 0) {
+                    pipeline.sync();
+                }
+            }
+            // une enchère fermée pendant la reconstruction peut y être restée : resolve() la retire
+            RECENT_AUCTIONS.markReady(pipeline);
+            ENDING_SOON.markReady(pipeline);
+            TOP_BIDS.markReady(pipeline);
+            pipeline.sync();
+            logger.info("Auction list indexes rebuilt: " + count + " auctions");
+        } catch (Exception e) {
+            logger.severe("Error rebuilding auction indexes: " + e.getMessage());
+        } finally {
+            RedisLock.release("index-rebuild:auctions", lease);
+        }
+    }
+}
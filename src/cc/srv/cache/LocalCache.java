@@ -0,0 +1,102 @@
+package cc.srv.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-JVM cache (L1) sitting in front of Redis.
+ * Entries are kept as serialized JSON so callers never share mutable objects,
+ * and the bound is expressed in bytes rather than entry count.
+ */
+public class LocalCache {
+    private final String name;
+    private final long maxBytes;
+    private final long ttlMillis;
+
+    // access-order => iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes = 0;
+    private long evictions = 0;
+    private final CacheStats stats = new CacheStats();
+
+    private static final class Entry {
+        final byte[] value;
+        final long expiresAt;
+
+        Entry(byte[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public LocalCache(String name, long maxBytes, long ttlMillis) {
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public byte[] get(String key) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                stats.hit();
+                return entry.value;
+            }
+            if (entry != null) {
+                removeEntry(key);
+            }
+        }
+        stats.miss();
+        return null;
+    }
+
+    public void put(String key, byte[] value) {
+        if (key == null || value == null || value.length > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            removeEntry(key);
+            entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+            currentBytes += value.length;
+            evictIfNeeded();
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        removeEntry(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public String getName() { return name; }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> result = stats.toMap();
+        result.put("entries", entries.size());
+        result.put("bytes", currentBytes);
+        result.put("maxBytes", maxBytes);
+        result.put("evictions", evictions);
+        return result;
+    }
+
+    private void removeEntry(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            currentBytes -= old.value.length;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            currentBytes -= eldest.getValue().value.length;
+            it.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package cc.srv.cache;
+
+import java.util.Collections;
+import java.util.UUID;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Short-lived lock shared by all replicas (SET NX PX).
+ * Only the holder of the token can release it, an expired lock is simply lost.
+ */
+public class RedisLock {
+    private static final String LOCK_PREFIX = "lock:";
+
+    // delete only if we still own the lock
+    private static final String RELEASE_SCRIPT =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    /**
+     * Returns the lock token, or null if another replica holds the lock.
+     */
+    public static String tryAcquire(String name, long ttlMillis) {
+        String token = UUID.randomUUID().toString();
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            String result = jedis.set(LOCK_PREFIX + name, token, SetParams.setParams().nx().px(ttlMillis));
+            return "OK".equals(result) ? token : null;
+        }
+    }
+
+    public static void release(String name, String token) {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            jedis.eval(RELEASE_SCRIPT, Collections.singletonList(LOCK_PREFIX + name), Collections.singletonList(token));
+        } catch (Exception e) {
+            System.err.println("Error releasing lock " + name + ": " + e.getMessage());
+        }
+    }
+}
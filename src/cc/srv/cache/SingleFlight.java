@@ -0,0 +1,38 @@
+package cc.srv.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing on cache misses: for a given key only one loader runs at a time
+ * in this JVM, concurrent callers wait for its result instead of hitting the DB too.
+ */
+public class SingleFlight {
+    private static final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run loader for key, or wait for the call already in flight for the same key.
+     * A loader exception or error is propagated to every waiting caller.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T load(String key, Supplier<T> loader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return (T) existing.join();
+        }
+        try {
+            T value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Errors too (OOM, StackOverflowError...): otherwise the waiters never wake up.
+            // Only unchecked throwables can get here, so the rethrow needs no declaration.
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+}
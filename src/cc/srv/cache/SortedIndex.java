@@ -0,0 +1,126 @@
+package cc.srv.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.resps.Tuple;
+
+/**
+ * A list view kept as a Redis sorted set of ids (score = the sort key: a date in millis,
+ * an amount...). Maintained one member at a time on writes, read page by page with range
+ * queries, so a write never drops the whole list.
+ *
+ * A marker member, READY at score -inf, tells that the index was fully built from the DB:
+ * until then readers fall back to the DB (see ListIndexes). Being a member of the set, it
+ * goes away with it (eviction, flush, DEL), never leaving a ready but empty index. It
+ * sorts after every id in the descending reads and is never returned.
+ */
+public class SortedIndex {
+    private static final String PREFIX = "idx:";
+    static final String READY = "~ready";
+
+    private final String key;
+
+    public SortedIndex(String name) {
+        this.key = PREFIX + name;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public boolean isReady() {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            return jedis.zscore(key, READY) != null;
+        }
+    }
+
+    void markReady(Pipeline pipeline) {
+        pipeline.zadd(key, Double.NEGATIVE_INFINITY, READY);
+        // ancien marqueur (clé séparée, sans TTL)
+        pipeline.del(key + ":ready");
+    }
+
+    public void put(String id, double score) {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            jedis.zadd(key, score, id);
+        }
+    }
+
+    public void remove(String... ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            jedis.zrem(key, ids);
+        }
+    }
+
+    /**
+     * Members by rank: highest scores first if descending, lowest first otherwise.
+     */
+    public List<Tuple> range(int start, int count, boolean descending) {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            if (descending) {
+                return withoutMarker(jedis.zrevrangeWithScores(key, start, start + count - 1L));
+            }
+            // ascending, the marker has rank 0
+            return withoutMarker(jedis.zrangeWithScores(key, start + 1L, start + (long) count));
+        }
+    }
+
+    /**
+     * Members with a score of at least min, lowest first (e.g. auctions not closed yet).
+     */
+    public List<Tuple> rangeFrom(double min, int start, int count) {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            return withoutMarker(jedis.zrangeByScoreWithScores(key, min, Double.POSITIVE_INFINITY, start, count));
+        }
+    }
+
+    /**
+     * Keyset continuation, highest scores first: the members after (score, id), in the same
+     * (score desc, id desc) order as the DB queries. Starts right after the cursor's rank
+     * when it is still in the set; else from its score, skipping the members of that score
+     * that sort before it (ties are ordered by id, descending).
+     */
+    public List<Tuple> after(double score, String id, int count) {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            Long rank = jedis.zrevrank(key, id);
+            Double current = rank != null ? jedis.zscore(key, id) : null;
+            if (current != null && current == score) {
+                return withoutMarker(jedis.zrevrangeWithScores(key, rank + 1, rank + count));
+            }
+            List<Tuple> page = new ArrayList<>(count);
+            int offset = 0;
+            while (page.size() < count) {
+                List<Tuple> batch = jedis.zrevrangeByScoreWithScores(key, score, Double.NEGATIVE_INFINITY, offset, count);
+                for (Tuple entry : batch) {
+                    boolean before = entry.getScore() == score && entry.getElement().compareTo(id) >= 0;
+                    if (!before && !READY.equals(entry.getElement()) && page.size() < count) {
+                        page.add(entry);
+                    }
+                }
+                if (batch.size() < count) {
+                    break;
+                }
+                offset += batch.size();
+            }
+            return page;
+        }
+    }
+
+    private static List<Tuple> withoutMarker(List<Tuple> entries) {
+        entries.removeIf(entry -> READY.equals(entry.getElement()));
+        return entries;
+    }
+
+    public static List<String> ids(List<Tuple> entries) {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (Tuple entry : entries) {
+            ids.add(entry.getElement());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,47 @@
+package cc.srv.cache;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A fixed set of locks indexed by key hash: work on the same key runs one at a time in
+ * this JVM, work on different keys mostly in parallel (two keys share a stripe with
+ * probability 1/stripes). Memory stays constant whatever the number of keys.
+ */
+public class StripedLock {
+    private static final int AUCTION_STRIPES = Integer.parseInt(System.getenv().getOrDefault("AUCTION_LOCK_STRIPES", "256"));
+
+    /**
+     * Orders, per auction, a DB write with the cache update that follows it (bids, close),
+     * so that the cache never ends up holding an older state than the DB.
+     */
+    public static final StripedLock AUCTIONS = new StripedLock(AUCTION_STRIPES);
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1; // puissance de 2
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public <T> T withLock(String key, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // les bits hauts comptent aussi, comme HashMap
+        return stripes[h & mask];
+    }
+}
@@ -1,8 +1,11 @@
 package cc.srv.data;
 
 import java.util.Date;
-import java.util.*;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// ignoreUnknown: les anciennes entrées en cache portent encore la liste "bids"
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Auction {
     private String id;
     private String legoSetId;        // Référence au set Lego
@@ -11,12 +14,12 @@ public class Auction {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSX")
     private Date closeDate;          // Date de fin de l'enchère
     private String status;           // "ACTIVE", "ENDED", "CANCELLED"
-    private List<AuctionBid> bids;
+    // Résumé des enchères, l'historique complet est dans la collection Bids
+    private int bidCount;
     private AuctionBid highestBid;
 
     // Constructeurs
     public Auction() {
-        this.bids = new ArrayList<>();
     }
     
     
@@ -49,22 +52,14 @@ public class Auction {
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
-     public List<AuctionBid> getBids() { return bids; }
-    public void setBids(List<AuctionBid> bids) { this.bids = bids; }
+    public int getBidCount() { return bidCount; }
+    public void setBidCount(int bidCount) { this.bidCount = bidCount; }
     
-    // add a bid to the auction
+    // account for a new bid in the summary
     public void addBid(AuctionBid bid) {
-        this.bids.add(bid);
-        updateWinningBid();
-    }
-
- public void updateWinningBid() {
-        if (bids == null || bids.isEmpty()) {
-            this.highestBid = null;
-        } else {
-            this.highestBid = bids.stream()
-                .max(Comparator.comparingDouble(AuctionBid::getAmount))
-                .orElse(null);
+        this.bidCount++;
+        if (this.highestBid == null || bid.getAmount() > this.highestBid.getAmount()) {
+            this.highestBid = bid;
         }
     }
 
@@ -73,4 +68,9 @@ public class Auction {
     public AuctionBid getCurrentWinningBid() {
        return this.highestBid;
 }
-}
\ No newline at end of file
+
+    // set by the DB layer, which maintains the highest bid atomically
+    public void setCurrentWinningBid(AuctionBid highestBid) {
+        this.highestBid = highestBid;
+    }
+}
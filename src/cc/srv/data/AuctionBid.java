@@ -1,12 +1,15 @@
 package cc.srv.data;
 
 import java.util.Date;
+import com.fasterxml.jackson.annotation.JsonFormat;
 
 public class AuctionBid {
     private String id;
     private String auctionId; // id of the auction
     private String userId;  // id of the user placing the bid
     private double amount;    // bid amount
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSX")
+    private Date createdAt;   // time the bid was placed, orders the bid history
     
     
     // Constructors
@@ -20,6 +23,7 @@ public class AuctionBid {
         this.auctionId = auctionId;
         this.userId = userId;
         this.amount = amount;
+        this.createdAt = new Date();
 
     
     }
@@ -35,4 +39,7 @@ public class AuctionBid {
     public double getAmount() { return amount; }
     public void setAmount(double amount) { this.amount = amount; }
 
-}
\ No newline at end of file
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+}
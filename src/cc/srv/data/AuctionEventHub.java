@@ -0,0 +1,249 @@
+package cc.srv.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import cc.srv.cache.RedisCache;
+
+/**
+ * Live auction events (new highest bid, close) pushed to SSE clients.
+ *
+ * Events go through one Redis channel, so a bid placed on any pod reaches the watchers of
+ * every pod. Each pod holds a single subscription to that channel and fans each event out
+ * to its local sinks: the Redis cost does not grow with the number of clients. An idle
+ * client is just an open async response, no thread is held for it.
+ *
+ * watch() returns once the pod's subscription is active, so a client that registers and
+ * then reads the auction sees every event published after that read.
+ */
+public class AuctionEventHub {
+    private static final Logger logger = Logger.getLogger(AuctionEventHub.class.getName());
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static final String CHANNEL = "auction:events";
+    static final String BID = "bid";
+    static final String CLOSED = "closed";
+    private static final long RECONNECT_DELAY_MS = 1000;
+    private static final long KEEPALIVE_SECONDS = 30;
+    private static final long SUBSCRIBE_TIMEOUT_MS = 2000;
+
+    // auctionId -> clients of this pod watching it
+    private static final Map<String, Set<SseEventSink>> watchers = new ConcurrentHashMap<>();
+    // l'envoi aux clients ne bloque pas le thread qui lit Redis ; un seul thread garde l'ordre
+    // des événements d'une enchère (la dernière offre avant la clôture)
+    private static final ExecutorService fanout = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "auction-events-fanout"));
+    private static final ScheduledExecutorService keepalive = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "auction-events-keepalive"));
+
+    private static volatile Sse sse;
+    private static Thread thread;
+    // released by the first onSubscribe of the subscriber thread
+    private static final CountDownLatch subscribed = new CountDownLatch(1);
+
+    /**
+     * Adds a client; it gets every event of this auction until it disconnects or the
+     * auction closes. On the first call, waits (up to SUBSCRIBE_TIMEOUT_MS) for the Redis
+     * subscription to be active.
+     */
+    public static void watch(String auctionId, SseEventSink sink, Sse sseContext) {
+        start(sseContext);
+        // compute, not computeIfAbsent + add: remove() may drop the set of this auction meanwhile
+        watchers.compute(auctionId, (id, sinks) -> {
+            Set<SseEventSink> updated = sinks != null ? sinks : ConcurrentHashMap.<SseEventSink>newKeySet();
+            updated.add(sink);
+            return updated;
+        });
+        awaitSubscribed();
+    }
+
+    /**
+     * Removes a client added by watch() (auction not found or already closed).
+     */
+    public static void unwatch(String auctionId, SseEventSink sink) {
+        remove(auctionId, sink);
+    }
+
+    /**
+     * Publishes the new state of an auction after an accepted bid.
+     */
+    public static void publishBid(Auction auction) {
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            jedis.publish(CHANNEL, message(auction.getId(), BID, mapper.writeValueAsString(auction)));
+        } catch (Exception e) {
+            logger.warning("Error publishing bid event for auction " + auction.getId() + ": " + e.getMessage());
+        }
+    }
+
+    public static void publishClosed(String auctionId) {
+        publishClosed(List.of(auctionId));
+    }
+
+    /**
+     * Publishes the close of several auctions in one pipelined round trip.
+     */
+    public static void publishClosed(Collection<String> auctionIds) {
+        if (auctionIds.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (String auctionId : auctionIds) {
+                pipeline.publish(CHANNEL, message(auctionId, CLOSED, "{\"id\":" + mapper.writeValueAsString(auctionId) + "}"));
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            logger.warning("Error publishing close events: " + e.getMessage());
+        }
+    }
+
+    public static int watcherCount() {
+        int count = 0;
+        for (Set<SseEventSink> sinks : watchers.values()) {
+            count += sinks.size();
+        }
+        return count;
+    }
+
+    // auctionId|type|json
+    private static String message(String auctionId, String type, String json) {
+        return auctionId + "|" + type + "|" + json;
+    }
+
+    private static synchronized void start(Sse sseContext) {
+        if (thread != null) {
+            return;
+        }
+        sse = sseContext;
+        thread = new Thread(AuctionEventHub::listen, "auction-events-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+        keepalive.scheduleAtFixedRate(AuctionEventHub::sendKeepalive, KEEPALIVE_SECONDS, KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void awaitSubscribed() {
+        try {
+            if (!subscribed.await(SUBSCRIBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // Redis injoignable : le client reçoit l'état courant, les événements suivront la reconnexion
+                logger.warning("Auction events subscription not active after " + SUBSCRIBE_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void listen() {
+        JedisPubSub subscriber = new JedisPubSub() {
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onMessage(String channel, String message) {
+                dispatch(message);
+            }
+        };
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Jedis jedis = RedisCache.getCachePool().getResource()) {
+                // subscribe() blocks until the connection drops
+                jedis.subscribe(subscriber, CHANNEL);
+            } catch (Exception e) {
+                logger.warning("Auction events subscriber disconnected: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void dispatch(String message) {
+        int first = message.indexOf('|');
+        int second = message.indexOf('|', first + 1);
+        if (first < 0 || second < 0) {
+            return;
+        }
+        String auctionId = message.substring(0, first);
+        // la plupart des messages ne concernent aucun client de ce pod
+        Set<SseEventSink> sinks = watchers.get(auctionId);
+        if (sinks == null || sinks.isEmpty()) {
+            return;
+        }
+        String type = message.substring(first + 1, second);
+        String json = message.substring(second + 1);
+        fanout.execute(() -> {
+            // data is already JSON, written as-is
+            OutboundSseEvent event = sse.newEventBuilder()
+                .name(type)
+                .data(String.class, json)
+                .build();
+            // nothing follows a close: the stream ends once it is sent
+            boolean last = CLOSED.equals(type);
+            for (SseEventSink sink : sinks) {
+                send(auctionId, sink, event, last);
+            }
+        });
+    }
+
+    private static void sendKeepalive() {
+        if (watchers.isEmpty()) {
+            return;
+        }
+        // also how disconnected clients are noticed and dropped
+        OutboundSseEvent ping = sse.newEventBuilder().comment("keepalive").build();
+        for (Map.Entry<String, Set<SseEventSink>> entry : watchers.entrySet()) {
+            for (SseEventSink sink : entry.getValue()) {
+                send(entry.getKey(), sink, ping, false);
+            }
+        }
+    }
+
+    private static void send(String auctionId, SseEventSink sink, OutboundSseEvent event, boolean last) {
+        if (sink.isClosed()) {
+            remove(auctionId, sink);
+            return;
+        }
+        if (last) {
+            remove(auctionId, sink);
+        }
+        try {
+            sink.send(event).whenComplete((result, error) -> {
+                if (error != null || last) {
+                    remove(auctionId, sink);
+                    sink.close();
+                }
+            });
+        } catch (Exception e) {
+            remove(auctionId, sink);
+            sink.close();
+        }
+    }
+
+    private static void remove(String auctionId, SseEventSink sink) {
+        watchers.computeIfPresent(auctionId, (id, sinks) -> {
+            sinks.remove(sink);
+            return sinks.isEmpty() ? null : sinks;
+        });
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -1,20 +1,33 @@
 package cc.srv.data;
 
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import cc.srv.db.MongoDBLayer;
+import cc.srv.db.PageCursor;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import cc.srv.cache.CacheEntry;
 import cc.srv.cache.CacheService;
+import cc.srv.cache.ListIndexes;
+import cc.srv.cache.SingleFlight;
+import cc.srv.cache.StripedLock;
+import cc.srv.scheduler.AuctionCloser;
 import java.util.Date;
-import java.util.stream.Collectors;
 
 @Path("/auction")
 public class AuctionResource {
     private MongoDBLayer dbLayer = MongoDBLayer.getInstance();
+    private static final int MAX_PAGE = 100;
 
     // ==================== GET ENDPOINTS ====================
 
@@ -23,17 +36,10 @@ public class AuctionResource {
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listAuctions() {
+    public Response listAuctions(@QueryParam("st") int start, @QueryParam("len") int length) {
         try {
-            Iterator<Auction> auctionsIterator = dbLayer.getAuctions().iterator();
-            List<Auction> auctionList = new ArrayList<>();
-            
-            while (auctionsIterator.hasNext()) {
-                Auction auction = auctionsIterator.next();
-                auctionList.add(auction);
-            }
-
-            return Response.ok(auctionList).build();
+            // streamed from the cursor, one page (st/len) at a time
+            return JsonResponses.stream(dbLayer.getAuctions(Math.max(start, 0), JsonResponses.listLimit(length)).iterator());
         } catch (Exception e) {
             return Response.status(500).entity("Error retrieving auctions: " + e.getMessage()).build();
         }
@@ -45,26 +51,23 @@ public class AuctionResource {
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAuction(@PathParam("id") String id) {
+    public Response getAuction(@PathParam("id") String id, @Context Request request) {
         try {
             // try cache
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
             if (cacheEnabled) {
-                Auction cachedAuction = CacheService.getCachedAuction(id);
-                if (cachedAuction != null) {
-                    System.out.println("Auction " + id + " served from CACHE");
-                    return Response.ok(cachedAuction).build();
-                }}
-            // if not in cache, get from database
-            Auction auction = dbLayer.getAuctionById(id);
+                // stale entries are served right away and refreshed in the background
+                CacheEntry auctionJson = CacheService.getOrLoadAuction(id, () -> dbLayer.getAuctionById(id));
+                if (auctionJson == null) {
+                    return Response.status(404).entity("Auction not found with ID: " + id).build();
+                }
+                return JsonResponses.ok(request, auctionJson);
+            }
+            // un seul chargement par clé à la fois, les requêtes concurrentes attendent son résultat
+            Auction auction = SingleFlight.load("auction:" + id, () -> dbLayer.getAuctionById(id));
 
             if (auction != null) {
-                // cache it
-                if (cacheEnabled) {
-                    CacheService.cacheAuction(auction);
-                    System.out.println("Auction " + id + " CACHED after retrieval from DB");
-                }
-                return Response.ok(auction).build();
+                return JsonResponses.ok(request, auction);
 
             } else {
                 return Response.status(404).entity("Auction not found with ID: " + id).build();
@@ -74,24 +77,66 @@ public class AuctionResource {
         }
     }
 
-    // get auctions' bids
+    /**
+     * GET /rest/auction/{id}/events - Server-Sent Events stream of an auction: an "auction"
+     * event with its current state, a "bid" event with the updated auction on each new
+     * highest bid, and a "closed" event that ends the stream.
+     */
+    @GET
+    @Path("/{id}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void auctionEvents(@PathParam("id") String id, @Context SseEventSink sink, @Context Sse sse) {
+        // abonné avant de lire l'état courant : une offre acceptée après la lecture arrive en
+        // événement, une offre d'avant est dans l'état (le client compare bidCount si elle
+        // arrive aussi en événement, ou avant l'état initial)
+        AuctionEventHub.watch(id, sink, sse);
+        Auction auction;
+        try {
+            auction = dbLayer.getAuctionById(id);
+        } catch (RuntimeException e) {
+            AuctionEventHub.unwatch(id, sink);
+            throw e;
+        }
+        if (auction == null) {
+            AuctionEventHub.unwatch(id, sink);
+            throw new NotFoundException("Auction not found with ID: " + id);
+        }
+        boolean active = "ACTIVE".equals(auction.getStatus());
+        if (!active) {
+            AuctionEventHub.unwatch(id, sink);
+        }
+        sink.send(sse.newEventBuilder()
+                .name("auction")
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(Auction.class, auction)
+                .build())
+            .whenComplete((result, error) -> {
+                if (!active) {
+                    sink.close();
+                }
+            });
+    }
+
+    // get auctions' bids, newest first, page by page
 @GET
 @Path("/{id}/bids")
 @Produces(MediaType.APPLICATION_JSON)
-public Response getAuctionBids(@PathParam("id") String auctionId) {
+public Response getAuctionBids(@PathParam("id") String auctionId,
+                               @QueryParam("cursor") String cursor,
+                               @QueryParam("len") @DefaultValue("20") int length) {
     try {
-        // Récupérer l'auction depuis la base de données
-        Auction auction = dbLayer.getAuctionById(auctionId);
+        int limit = Math.min(Math.max(length, 1), MAX_PAGE);
+        Page<AuctionBid> page = dbLayer.getBidsByAuction(auctionId, cursor, limit);
         
-        if ( auction == null) {
+        // page vide : distinguer une enchère sans offres d'une enchère inexistante
+        if (page.getItems().isEmpty() && cursor == null && dbLayer.getAuctionById(auctionId) == null) {
             return Response.status(404).entity("Auction not found").build();
         }
         
-        // Retourner uniquement la liste des bids
-        List<AuctionBid> bids = auction.getBids();
-        
-        return Response.ok(bids).build();
+        return Response.ok(page).build();
         
+    } catch (IllegalArgumentException e) {
+        return Response.status(400).entity(e.getMessage()).build();
     } catch (Exception e) {
         return Response.status(500).entity("Error retrieving auction bids: " + e.getMessage()).build();
     }
@@ -115,23 +160,24 @@ public Response getAuctionBids(@PathParam("id") String auctionId) {
                 return Response.status(400).entity("Close date is required").build();
             }
 
-            // S'assurer que le status est ACTIVE par défaut et initialiser les bids
+            // S'assurer que le status est ACTIVE par défaut, sans enchères
             auction.setStatus("ACTIVE");
-            if (auction.getBids() == null) {
-                auction.setBids(new ArrayList<>());
-            }
+            auction.setBidCount(0);
+            auction.setCurrentWinningBid(null);
             
             dbLayer.putAuction(auction);
+            // closed by this pod's scheduler at closeDate
+            AuctionCloser.schedule(auction);
             // cache the new auction
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
             if (cacheEnabled) {
                 CacheService.cacheAuction(auction);
-                System.out.println("New auction " + auction.getId() + " CACHED after creation");
+                // added to the recent and ending-soon indexes, no list page is dropped
+                ListIndexes.auctionCreated(auction);
+                System.out.println("New auction " + auction.getId() + " CACHED and INDEXED after creation");
             }
             // invalidate auctions list cache for this LegoSet
                 CacheService.invalidateAuctionsByLegoSet(auction.getLegoSetId());
-            
-            System.out.println("New auction " + auction.getId() + " CACHED and lists INVALIDATED after creation");
         
             return Response.status(201).entity(auction).build();
             
@@ -149,10 +195,8 @@ public Response getAuctionBids(@PathParam("id") String auctionId) {
 @Produces(MediaType.APPLICATION_JSON)
 public Response placeBid(@PathParam("id") String auctionId, AuctionBid bid) {
     try {
-        Auction auction = dbLayer.getAuctionById(auctionId);
-        
-        if (auction == null) {
-            return Response.status(404).entity("Auction not found").build();
+        if (bid == null) {
+            return Response.status(400).entity("Bid is required").build();
         }
        
         if (bid.getId() == null || bid.getId().trim().isEmpty()) {
@@ -160,19 +204,37 @@ public Response placeBid(@PathParam("id") String auctionId, AuctionBid bid) {
              }
         
         bid.setAuctionId(auctionId); // Associer l'ID de l'enchère
+        bid.setCreatedAt(new Date());
        
         
-        // Ajouter l'enchère
-        auction.addBid(bid);
+        boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+        // Écriture en base puis mise à jour du cache, dans cet ordre pour toutes les offres d'une
+        // même enchère : sinon une requête plus lente remet en cache une offre déjà dépassée.
+        // Les autres enchères ne sont pas bloquées (un verrou par tranche d'ids).
+        Auction auction = StripedLock.AUCTIONS.withLock(auctionId, () -> {
+            // Ajout atomique côté MongoDB : pas de lecture préalable de l'enchère
+            Auction updated = dbLayer.placeBid(auctionId, bid);
+            if (updated != null && cacheEnabled) {
+                CacheService.cacheAuction(updated);
+                CacheService.invalidateAuctionsByLegoSet(updated.getLegoSetId());
+                // sous le verrou aussi : le score du classement ne peut que monter
+                ListIndexes.bidPlaced(updated);
+            }
+            if (updated != null) {
+                // sous le même verrou : les clients SSE reçoivent les offres dans l'ordre
+                AuctionEventHub.publishBid(updated);
+            }
+            return updated;
+        });
         
-        // Mettre à jour l'enchère dans la base
-        dbLayer.updateAuction(auction);
+        if (auction == null) {
+            return Response.status(409)
+                .entity("Bid rejected: auction " + auctionId + " not found or not active, or amount " + bid.getAmount()
+                    + " not above the base price and the current highest bid")
+                .build();
+        }
         
-        // Invalider le cache
-        boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
         if (cacheEnabled) {
-            CacheService.cacheAuction(auction); 
-            CacheService.invalidateAuctionsByLegoSet(auction.getLegoSetId()); 
             System.out.println("Auction cache UPDATED and list cache INVALIDATED after new bid");
         }
         
@@ -191,12 +253,13 @@ public Response placeBid(@PathParam("id") String auctionId, AuctionBid bid) {
             // try to get from cache first
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
             if (cacheEnabled) {
-                List<Auction> cachedAuctions = CacheService.getCachedAuctionsByLegoSet(legoSetId);
+                List<AuctionSummary> cachedAuctions = CacheService.getCachedAuctionsByLegoSet(legoSetId);
                 if (cachedAuctions != null) {
                     System.out.println("Auctions for LegoSet " + legoSetId + " served from CACHE");
                     return Response.ok(cachedAuctions).build();
                 }}
-            List<Auction> auctions = dbLayer.getAuctionsByLegoSetId(legoSetId);
+            // résumés seulement (projection), le détail est sur GET /auction/{id}
+            List<AuctionSummary> auctions = dbLayer.getAuctionSummariesByLegoSetId(legoSetId);
 
             // cache the result
             if (cacheEnabled) {
@@ -225,55 +288,165 @@ public Response placeBid(@PathParam("id") String auctionId, AuctionBid bid) {
     @GET
     @Path("/active")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getActiveAuctions() {
+    public Response getActiveAuctions(@QueryParam("st") int start, @QueryParam("len") int length) {
         try { 
-            List<Auction> auctionList = dbLayer.getActiveAuctions();
-            return Response.ok(auctionList).build();
+            return JsonResponses.stream(dbLayer.getActiveAuctions(Math.max(start, 0), JsonResponses.listLimit(length)).iterator());
         } catch (Exception e) {
             return Response.status(500).entity("Error retrieving active auctions: " + e.getMessage()).build();
         }
     }
 
+/**
+ * GET /rest/auction/any/recent - Recent auctions.
+ * With ?cursor= (empty for the first page) returns a Page whose nextCursor gives the
+ * following page (keyset pagination); without it, st/len offset pagination as before.
+ */
 @GET
 @Path("/any/recent")
 @Produces(MediaType.APPLICATION_JSON)
 public Response getRecentAuctions(@QueryParam("st") int start, 
-                                  @QueryParam("len") int length) {
+                                  @QueryParam("len") int length,
+                                  @QueryParam("cursor") String cursor,
+                                  @Context Request request) {
     try {
         boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
         
         int limit = (length > 0) ? length : 20;
-        
-        if (cacheEnabled) {
-            List<Auction> cachedRecentAuctions = CacheService.getCachedRecentAuctions();
-            if (cachedRecentAuctions != null) {
-                System.out.println("Recent Auctions served from CACHE");
-                List<Auction> limitedAuctions = cachedRecentAuctions.stream()
-                    .skip(start)
-                    .limit(limit)
-                    .collect(Collectors.toList());
-                return Response.ok(limitedAuctions).build();
-            }
-        }
-        
-        Iterator<Auction> recentAuctions = dbLayer.getRecentAuctions(start, limit);
-        
-        List<Auction> recentAuctionList = new ArrayList<>();
-        while (recentAuctions.hasNext()) {
-            recentAuctionList.add(recentAuctions.next());
+        boolean keyset = cursor != null;
+        if (keyset) {
+            limit = Math.min(limit, MAX_PAGE);
         }
+        String pageId = keyset ? CacheService.recentPageId(cursor, limit) : CacheService.recentPageId(start, limit);
+        PageCursor after = PageCursor.decode(cursor); // 400 sur un curseur invalide
         
-        if (cacheEnabled) {
-            CacheService.cacheRecentAuctions(recentAuctionList);
-            System.out.println("Recent Auctions CACHED after retrieval from DB");
+        final int pageLimit = limit;
+        if (cacheEnabled && ListIndexes.ready(ListIndexes.RECENT_AUCTIONS)) {
+            // range sur l'index trié par closeDate puis multi-get des enchères (cache, puis base)
+            Object page = ListIndexes.recentPage(ListIndexes.RECENT_AUCTIONS, keyset, after, start, pageLimit,
+                ids -> getAuctionsByIds(dbLayer, ids, true), Auction::getId);
+            return JsonResponses.ok(request, page);
         }
 
-        return Response.ok(recentAuctionList).build();
+        // index pas encore (re)construit : lecture en base
+        Object result = SingleFlight.load("recent_auctions:" + pageId, () -> loadRecentAuctions(keyset, cursor, start, pageLimit));
+        return JsonResponses.ok(request, result);
         
+    } catch (IllegalArgumentException e) {
+        return Response.status(400).entity(e.getMessage()).build();
     } catch (Exception e) {
         return Response.status(500)
             .entity("Error retrieving recent Auctions: " + e.getMessage())
             .build();
     }
 }
-}
\ No newline at end of file
+
+/**
+ * GET /rest/auction/any/ending-soon?st=&len= - Active auctions, the closest to their
+ * closeDate first.
+ */
+@GET
+@Path("/any/ending-soon")
+@Produces(MediaType.APPLICATION_JSON)
+public Response getEndingSoonAuctions(@QueryParam("st") int start,
+                                      @QueryParam("len") int length,
+                                      @Context Request request) {
+    try {
+        boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+        int offset = Math.max(start, 0);
+        int limit = Math.min(length > 0 ? length : 20, MAX_PAGE);
+
+        if (cacheEnabled && ListIndexes.ready(ListIndexes.ENDING_SOON)) {
+            // à partir de maintenant : une enchère échue pas encore fermée n'est pas listée
+            List<Auction> page = ListIndexes.resolve(ListIndexes.ENDING_SOON,
+                ListIndexes.ENDING_SOON.rangeFrom(System.currentTimeMillis(), offset, limit),
+                ids -> getAuctionsByIds(dbLayer, ids, true), Auction::getId, AuctionResource::isActive);
+            return JsonResponses.ok(request, page);
+        }
+
+        List<Auction> page = dbLayer.getActiveAuctions(offset, limit).into(new ArrayList<>());
+        return JsonResponses.ok(request, page);
+    } catch (Exception e) {
+        return Response.status(500).entity("Error retrieving auctions ending soon: " + e.getMessage()).build();
+    }
+}
+
+/**
+ * GET /rest/auction/any/top-bids?st=&len= - Active auctions with the highest bids first.
+ */
+@GET
+@Path("/any/top-bids")
+@Produces(MediaType.APPLICATION_JSON)
+public Response getTopBidAuctions(@QueryParam("st") int start,
+                                  @QueryParam("len") int length,
+                                  @Context Request request) {
+    try {
+        boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+        int offset = Math.max(start, 0);
+        int limit = Math.min(length > 0 ? length : 20, MAX_PAGE);
+
+        if (cacheEnabled && ListIndexes.ready(ListIndexes.TOP_BIDS)) {
+            List<Auction> page = ListIndexes.resolve(ListIndexes.TOP_BIDS,
+                ListIndexes.TOP_BIDS.range(offset, limit, true),
+                ids -> getAuctionsByIds(dbLayer, ids, true), Auction::getId, AuctionResource::isActive);
+            return JsonResponses.ok(request, page);
+        }
+
+        List<Auction> page = dbLayer.getTopBidAuctions(offset, limit).into(new ArrayList<>());
+        return JsonResponses.ok(request, page);
+    } catch (Exception e) {
+        return Response.status(500).entity("Error retrieving top bid auctions: " + e.getMessage()).build();
+    }
+}
+
+// une enchère fermée dont le retrait de l'index a été perdu est retirée à la lecture
+private static boolean isActive(Auction auction) {
+    return "ACTIVE".equals(auction.getStatus());
+}
+
+/**
+ * Multi-get like LegoSetResource.getLegoSetsByIds: one Redis MGET, one $in query for the
+ * misses. Keeps the order of ids, skips unknown ones.
+ *
+ * Unlike LegoSets, the misses are not written back: the $in runs outside the auctions'
+ * StripedLock, so a bid cached meanwhile would be overwritten by the older state. Auctions
+ * are cached by the writers and getOrLoadAuction, which read and write under the lock.
+ */
+static List<Auction> getAuctionsByIds(MongoDBLayer dbLayer, Collection<String> ids, boolean cacheEnabled) {
+    Map<String, Auction> found = cacheEnabled ? CacheService.getCachedAuctions(ids) : new HashMap<>();
+
+    List<String> misses = new ArrayList<>();
+    for (String id : ids) {
+        if (!found.containsKey(id)) {
+            misses.add(id);
+        }
+    }
+    if (!misses.isEmpty()) {
+        for (Auction auction : dbLayer.getAuctionsByIds(misses)) {
+            found.put(auction.getId(), auction);
+        }
+    }
+
+    List<Auction> result = new ArrayList<>();
+    for (String id : ids) {
+        Auction auction = found.get(id);
+        if (auction != null) {
+            result.add(auction);
+        }
+    }
+    return result;
+}
+
+// page de la liste des récents : Page (curseur) ou liste (st/len)
+private Object loadRecentAuctions(boolean keyset, String cursor, int start, int limit) {
+    if (keyset) {
+        return dbLayer.getRecentAuctionsPage(cursor, limit);
+    }
+    Iterator<Auction> recentAuctions = dbLayer.getRecentAuctions(start, limit);
+    
+    List<Auction> recentAuctionList = new ArrayList<>();
+    while (recentAuctions.hasNext()) {
+        recentAuctionList.add(recentAuctions.next());
+    }
+    return recentAuctionList;
+}
+}
@@ -0,0 +1,52 @@
+package cc.srv.data;
+
+import java.util.Date;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Auction as shown in list views: read through a projection, so only these fields leave
+ * MongoDB. The full Auction (with its highest bid) is for the detail view.
+ */
+public class AuctionSummary {
+    private String id;
+    private String legoSetId;
+    private String sellerId;
+    private double basePrice;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSX")
+    private Date closeDate;
+    private String status;
+    private int bidCount;
+    private Double highestBidAmount; // null tant qu'il n'y a pas d'offre
+
+    public AuctionSummary() {
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getLegoSetId() { return legoSetId; }
+    public void setLegoSetId(String legoSetId) { this.legoSetId = legoSetId; }
+
+    public String getSellerId() { return sellerId; }
+    public void setSellerId(String sellerId) { this.sellerId = sellerId; }
+
+    public double getBasePrice() { return basePrice; }
+    public void setBasePrice(double basePrice) { this.basePrice = basePrice; }
+
+    public Date getCloseDate() { return closeDate; }
+    public void setCloseDate(Date closeDate) { this.closeDate = closeDate; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getBidCount() { return bidCount; }
+    public void setBidCount(int bidCount) { this.bidCount = bidCount; }
+
+    public Double getHighestBidAmount() { return highestBidAmount; }
+    public void setHighestBidAmount(Double highestBidAmount) { this.highestBidAmount = highestBidAmount; }
+
+    // decoded from the projected "highestBid.amount" of the stored auction
+    public void setHighestBid(AuctionBid highestBid) {
+        this.highestBidAmount = highestBid != null ? highestBid.getAmount() : null;
+    }
+}
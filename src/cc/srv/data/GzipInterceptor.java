@@ -0,0 +1,184 @@
+package cc.srv.data;
+
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips JSON responses for clients that accept it. The first MIN_BYTES of the body are
+ * buffered: smaller bodies go out as-is, larger ones switch to gzip before anything is
+ * written, so no response is ever held in memory whole.
+ *
+ * Responses that already carry a Content-Encoding are left alone.
+ *
+ * A gzipped body is another representation than the identity one, so its ETag gets the
+ * ETAG_SUFFIX: a cache never answers an If-None-Match with the bytes of the other coding.
+ */
+@Provider
+public class GzipInterceptor implements WriterInterceptor {
+    static final int MIN_BYTES = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_MIN_BYTES", "1024"));
+    static final int LEVEL = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_LEVEL", "6"));
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getenv().getOrDefault("COMPRESSION_ENABLED", "true"));
+    static final String ETAG_SUFFIX = "-gzip";
+
+    @Context
+    private HttpHeaders requestHeaders;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MediaType type = context.getMediaType();
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (!ENABLED || type == null || !type.isCompatible(MediaType.APPLICATION_JSON_TYPE)
+                || hasHeader(headers, "Content-Encoding")) {
+            context.proceed();
+            return;
+        }
+
+        headers.add("Vary", "Accept-Encoding");
+        if (!acceptsGzip(requestHeaders)) {
+            context.proceed();
+            return;
+        }
+
+        ThresholdGzipOutputStream out = new ThresholdGzipOutputStream(context.getOutputStream(), headers);
+        context.setOutputStream(out);
+        context.proceed();
+        out.finish();
+    }
+
+    /**
+     * Whether the request's Accept-Encoding allows gzip (q=0 excludes it).
+     */
+    static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        if (requestHeaders == null) {
+            return false;
+        }
+        String acceptEncoding = requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The ETag of the gzip variant of the representation tagged tag.
+     */
+    static EntityTag gzipTag(EntityTag tag) {
+        return new EntityTag(tag.getValue() + ETAG_SUFFIX, tag.isWeak());
+    }
+
+    // the ETag set by the resource, if any, moved to the gzip variant
+    private static void tagAsGzip(MultivaluedMap<String, Object> headers) {
+        Object etag = headers.getFirst(HttpHeaders.ETAG);
+        if (etag instanceof EntityTag tag) {
+            headers.putSingle(HttpHeaders.ETAG, gzipTag(tag));
+        } else if (etag != null) {
+            headers.putSingle(HttpHeaders.ETAG, gzipTag(EntityTag.valueOf(etag.toString())));
+        }
+    }
+
+    private static GZIPOutputStream newGzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(LEVEL);
+            }
+        };
+    }
+
+    private static boolean hasHeader(MultivaluedMap<String, Object> headers, String name) {
+        for (String key : headers.keySet()) {
+            if (key.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // buffers up to MIN_BYTES, then commits to gzip (headers are still writable at that point)
+    private static final class ThresholdGzipOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final MultivaluedMap<String, Object> headers;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private GZIPOutputStream gzip;
+
+        ThresholdGzipOutputStream(OutputStream target, MultivaluedMap<String, Object> headers) {
+            this.target = target;
+            this.headers = headers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                gzip.write(b, off, len);
+                return;
+            }
+            pending.write(b, off, len);
+            if (pending.size() >= MIN_BYTES) {
+                headers.putSingle("Content-Encoding", "gzip");
+                headers.remove("Content-Length");
+                tagAsGzip(headers);
+                gzip = newGzip(target);
+                pending.writeTo(gzip);
+                pending = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // below the threshold nothing is sent yet
+            if (gzip != null) {
+                gzip.flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (gzip != null) {
+                gzip.finish();
+            } else if (pending != null) {
+                pending.writeTo(target);
+                pending = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            target.close();
+        }
+    }
+}
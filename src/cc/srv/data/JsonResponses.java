@@ -0,0 +1,122 @@
+package cc.srv.data;
+
+import cc.srv.cache.CacheEntry;
+import cc.utils.Hash;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET for JSON resources: a strong ETag (SHA-1 of the JSON) on every 200, and a
+ * bodyless 304 when If-None-Match still matches. Cached entries carry their ETag, so a 304
+ * from the cache never builds nor hashes the entity.
+ *
+ * Gzipped bodies are tagged with the ETag plus GzipInterceptor.ETAG_SUFFIX; If-None-Match
+ * may hold either tag.
+ */
+public class JsonResponses {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // one flush at the end of the array, not one per element
+    private static final ObjectWriter elementWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    // Full-collection endpoints are paginated unless LIST_MAX_PAGE=0
+    static final int DEFAULT_LIST_PAGE = 100;
+    static final int MAX_LIST_PAGE = Integer.parseInt(System.getenv().getOrDefault("LIST_MAX_PAGE", "1000"));
+
+    private JsonResponses() {}
+
+    public static Response ok(Request request, CacheEntry entry) {
+        return conditional(request, entry.etag(), () -> body(entry));
+    }
+
+    /**
+     * Uncached path: the entity is serialized once, hashed, and written as-is.
+     */
+    public static Response ok(Request request, Object entity) throws JsonProcessingException {
+        byte[] json = mapper.writeValueAsBytes(entity);
+        return conditional(request, Hash.toHex(Hash.digest(json)), () -> json);
+    }
+
+    // the JSON written straight from the cached bytes, behind the entry's header
+    private static StreamingOutput body(CacheEntry entry) {
+        return entry::writeTo;
+    }
+
+    private static Response conditional(Request request, String etag, Supplier<?> body) {
+        Response.ResponseBuilder notModified = notModified(request, etag);
+        if (notModified != null) {
+            // the 304 skips the interceptors, which add the Vary of the 200
+            return notModified.cacheControl(revalidate()).header("Vary", "Accept-Encoding").build();
+        }
+        return Response.ok(body.get(), MediaType.APPLICATION_JSON)
+                .tag(new EntityTag(etag))
+                .cacheControl(revalidate())
+                .build();
+    }
+
+    // a 304 if If-None-Match holds the identity or the gzip tag, carrying the tag that matched
+    private static Response.ResponseBuilder notModified(Request request, String etag) {
+        EntityTag tag = new EntityTag(etag);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        return notModified != null ? notModified : request.evaluatePreconditions(GzipInterceptor.gzipTag(tag));
+    }
+
+    /**
+     * Page size for a full-collection endpoint: len if given, else DEFAULT_LIST_PAGE, never
+     * more than MAX_LIST_PAGE. Returns 0 (no limit) only if both len and the cap are off.
+     */
+    static int listLimit(int len) {
+        if (MAX_LIST_PAGE <= 0) {
+            return Math.max(len, 0);
+        }
+        return len > 0 ? Math.min(len, MAX_LIST_PAGE) : DEFAULT_LIST_PAGE;
+    }
+
+    /**
+     * Streams the items as a JSON array straight from the iterator (typically an open Mongo
+     * cursor), one element at a time, so memory stays flat whatever the collection size.
+     * The iterator is closed once written if it is closeable.
+     */
+    public static Response stream(Iterator<?> items) {
+        StreamingOutput body = output -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                while (items.hasNext()) {
+                    elementWriter.writeValue(generator, items.next());
+                }
+                generator.writeEndArray();
+            } finally {
+                close(items);
+            }
+        };
+        return Response.ok(body, MediaType.APPLICATION_JSON).build();
+    }
+
+    static void close(Iterator<?> items) {
+        if (items instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) items).close();
+            } catch (Exception e) {
+                // curseur déjà fermé côté serveur
+            }
+        }
+    }
+
+    // les clients revalident à chaque fois, mais un 304 ne coûte presque rien
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        return cacheControl;
+    }
+}
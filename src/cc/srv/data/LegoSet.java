@@ -40,6 +40,7 @@ public class LegoSet {
     
     public List<String> getPhotoMediaIds() { return photoMediaIds; }
     public void setPhotoUrls(List<String> photoMediaIds) { this.photoMediaIds = photoMediaIds; }
+    public void setPhotoMediaIds(List<String> photoMediaIds) { this.photoMediaIds = photoMediaIds; }
     
 
     //  add a photo Media Id to the list
@@ -1,23 +1,33 @@
 package cc.srv.data;
 
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import cc.srv.db.MongoDBLayer;
+import cc.srv.db.PageCursor;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Arrays;
 import java.util.UUID;
+import cc.srv.cache.CacheEntry;
 import cc.srv.cache.CacheService;
-import java.util.stream.Collectors;
+import cc.srv.cache.ListIndexes;
+import cc.srv.cache.SingleFlight;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 
 @Path("/legoset")
 public class LegoSetResource {
     private MongoDBLayer dbLayer = MongoDBLayer.getInstance();
+    private static final int MAX_PAGE = 100;
+    private static final int MAX_BULK_IDS = 500;
 
 
     
@@ -51,8 +61,8 @@ public class LegoSetResource {
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
             if (cacheEnabled) {
                 CacheService.cacheLegoSet(legoSet);
-                // invalidate most recent added LegoSets cache
-                CacheService.invalidateRecentLegoSets();
+                // only this set enters the recent list, the other pages stay valid
+                ListIndexes.legoSetSaved(legoSet);
                 System.out.println("LegoSet " + legoSet.getId() + " CACHED after creation");
             }
             return Response.status(201).entity(legoSet).build();
@@ -63,47 +73,92 @@ public class LegoSetResource {
     }
 
     
-    // Get all LegoSets
+    // Get all LegoSets, or only those listed in ?ids=a,b,c (bulk get)
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listLegoSets() {
+    public Response listLegoSets(@QueryParam("ids") List<String> ids,
+                                 @QueryParam("st") int start,
+                                 @QueryParam("len") int length) {
         try {
-            Iterator<LegoSet> iterator = dbLayer.getLegoSets().iterator();
-            List<LegoSet> legoSetList = new ArrayList<>();
-            
-            while (iterator.hasNext()) {
-                legoSetList.add(iterator.next());
+            if (ids != null && !ids.isEmpty()) {
+                Set<String> legoSetIds = new LinkedHashSet<>();
+                for (String param : ids) {
+                    for (String id : param.split(",")) {
+                        if (!id.trim().isEmpty()) {
+                            legoSetIds.add(id.trim());
+                        }
+                    }
+                }
+                if (legoSetIds.size() > MAX_BULK_IDS) {
+                    return Response.status(400).entity("At most " + MAX_BULK_IDS + " ids per request").build();
+                }
+                boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+                return Response.ok(getLegoSetsByIds(dbLayer, legoSetIds, cacheEnabled)).build();
             }
 
-            return Response.ok(legoSetList).build();
+            // streamed from the cursor, one page (st/len) at a time
+            return JsonResponses.stream(dbLayer.getLegoSets(Math.max(start, 0), JsonResponses.listLimit(length)).iterator());
         } catch (Exception e) {
             return Response.status(500).entity("Error retrieving LegoSets: " + e.getMessage()).build();
         }
     }
 
+    /**
+     * Multi-get shared with UserResource: one Redis MGET, one $in query for the misses,
+     * one pipeline to back-fill the cache. Keeps the order of ids, skips unknown ones.
+     */
+    static List<LegoSet> getLegoSetsByIds(MongoDBLayer dbLayer, Collection<String> ids, boolean cacheEnabled) {
+        Map<String, LegoSet> found = cacheEnabled ? CacheService.getCachedLegoSets(ids) : new HashMap<>();
+
+        List<String> misses = new ArrayList<>();
+        for (String id : ids) {
+            if (!found.containsKey(id)) {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<LegoSet> fromDb = dbLayer.getLegoSetsByIds(misses);
+            for (LegoSet legoSet : fromDb) {
+                found.put(legoSet.getId(), legoSet);
+            }
+            if (cacheEnabled) {
+                CacheService.cacheLegoSets(fromDb);
+            }
+            System.out.println("LegoSets bulk get: " + (ids.size() - misses.size()) + " from CACHE, " + fromDb.size() + " from DB");
+        }
+
+        List<LegoSet> result = new ArrayList<>();
+        for (String id : ids) {
+            LegoSet legoSet = found.get(id);
+            if (legoSet != null) {
+                result.add(legoSet);
+            }
+        }
+        return result;
+    }
+
     // Get specific LegoSet by ID
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getLegoSet(@PathParam("id") String id) {
+    public Response getLegoSet(@PathParam("id") String id, @Context Request request) {
         try {
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
             if (cacheEnabled) {
-                // try to get from cache first
-                LegoSet cachedLegoSet = CacheService.getCachedLegoSet(id);
-                if (cachedLegoSet != null) {
-                    System.out.println("LegoSet " + id + " served from CACHE");
-                    return Response.ok(cachedLegoSet).build();}}
+                // cached JSON is written as-is, no deserialization; a stale entry is served
+                // right away and refreshed in the background, a miss is loaded once per key
+                CacheEntry legoSetJson = CacheService.getOrLoadLegoSet(id, () -> dbLayer.getLegoSetById(id));
+                if (legoSetJson == null) {
+                    return Response.status(404).entity("LegoSet not found with ID: " + id).build();
+                }
+                return JsonResponses.ok(request, legoSetJson);
+            }
                    
-            LegoSet legoSet = dbLayer.getLegoSetById(id);
+            // un seul chargement par clé à la fois, les requêtes concurrentes attendent son résultat
+            LegoSet legoSet = SingleFlight.load("legoset:" + id, () -> dbLayer.getLegoSetById(id));
 
             if (legoSet != null) {
-                // cache it
-                if (cacheEnabled) {
-                    CacheService.cacheLegoSet(legoSet);
-                    System.out.println("LegoSet " + id + " CACHED after retrieval from DB");
-                }
-                return Response.ok(legoSet).build();
+                return JsonResponses.ok(request, legoSet);
             } else {
                 return Response.status(404).entity("LegoSet not found with ID: " + id).build();
             }
@@ -136,8 +191,7 @@ public class LegoSetResource {
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
             if (cacheEnabled) {
                 CacheService.cacheLegoSet(legoSet);
-                // invalidate most recent added LegoSets cache
-                CacheService.invalidateRecentLegoSets();
+                ListIndexes.legoSetSaved(legoSet);
                 System.out.println("LegoSet " + legoSet.getId() + " CACHED after update");
             }
             return Response.ok(legoSet).build();
@@ -154,6 +208,11 @@ public class LegoSetResource {
     public Response deleteLegoSet(@PathParam("id") String id) {
         try {
             dbLayer.delLegoSetById(id);
+            boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+            if (cacheEnabled) {
+                CacheService.invalidateLegoSet(id);
+                ListIndexes.legoSetDeleted(id);
+            }
             return Response.status(204).build(); 
         } catch (Exception e) {
             return Response.status(500).entity("Error deleting LegoSet: " + e.getMessage()).build();
@@ -237,45 +296,46 @@ public Response getComments(
     }
 }
    
+/**
+ * GET /rest/legoset/any/recent - Recent LegoSets.
+ * With ?cursor= (empty for the first page) returns a Page whose nextCursor gives the
+ * following page (keyset pagination); without it, st/len offset pagination as before.
+ * Items are LegoSetSummary; GET /rest/legoset/{id} has the full set.
+ */
 @GET
 @Path("/any/recent")
 @Produces(MediaType.APPLICATION_JSON)
 public Response getRecentLegoSets(@QueryParam("st") int start, 
-                                  @QueryParam("len") int length) {
+                                  @QueryParam("len") int length,
+                                  @QueryParam("cursor") String cursor,
+                                  @Context Request request) {
     try {
         boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
         
         //  limite par défaut si non spécifiée
         int limit = (length > 0) ? length : 20;
-        
-        // Try to get from cache first (vous devrez peut-être adapter le cache pour gérer les limites)
-        if (cacheEnabled) {
-            List<LegoSet> cachedRecentSets = CacheService.getCachedRecentLegoSets();
-            if (cachedRecentSets != null) {
-                System.out.println("Recent LegoSets served from CACHE");
-                // Appliquer la limite sur les données en cache
-                List<LegoSet> limitedSets = cachedRecentSets.stream()
-                    .skip(start)
-                    .limit(limit)
-                    .collect(Collectors.toList());
-                return Response.ok(limitedSets).build();
-            }
-        }   
-        Iterator<LegoSet> recentLegoSets = dbLayer.getRecentLegoSets(start, length);
-        
-        List<LegoSet> recentSets = new ArrayList<>();
-        while (recentLegoSets.hasNext()) {
-            recentSets.add(recentLegoSets.next());
+        boolean keyset = cursor != null;
+        if (keyset) {
+            limit = Math.min(limit, MAX_PAGE);
         }
+        String pageId = keyset ? CacheService.recentPageId(cursor, limit) : CacheService.recentPageId(start, limit);
+        PageCursor after = PageCursor.decode(cursor); // 400 sur un curseur invalide
         
-        // Cache the recent LegoSets (vous pourriez cacher le jeu complet)
-        if (cacheEnabled) {
-            CacheService.cacheRecentLegoSets(recentSets);
-            System.out.println("Recent LegoSets CACHED after retrieval from DB");
+        final int pageLimit = limit;
+        if (cacheEnabled && ListIndexes.ready(ListIndexes.RECENT_LEGOSETS)) {
+            // range sur l'index trié puis multi-get des sets : une écriture ne touche que son
+            // entrée, aucune page n'est à invalider
+            Object page = ListIndexes.recentPage(ListIndexes.RECENT_LEGOSETS, keyset, after, start, pageLimit,
+                ids -> getLegoSetSummariesByIds(ids), LegoSetSummary::getId);
+            return JsonResponses.ok(request, page);
         }
 
-        return Response.ok(recentSets).build();
+        // index pas encore (re)construit : lecture en base
+        Object result = SingleFlight.load("recent_legosets:" + pageId, () -> loadRecentLegoSets(keyset, cursor, start, pageLimit));
+        return JsonResponses.ok(request, result);
         
+    } catch (IllegalArgumentException e) {
+        return Response.status(400).entity(e.getMessage()).build();
     } catch (Exception e) {
         return Response.status(500)
             .entity("Error retrieving recent LegoSets: " + e.getMessage())
@@ -307,6 +367,52 @@ public Response getMostLikedLegoSets(
     }
 }
 
+/**
+ * List entries of a page of the recent index, in the order of ids: the LegoSets found in the
+ * cache are summarized, the misses are read projected. The cache is not back-filled from
+ * those, a summary is not a LegoSet.
+ */
+private List<LegoSetSummary> getLegoSetSummariesByIds(List<String> ids) {
+    Map<String, LegoSetSummary> found = new HashMap<>();
+    for (LegoSet legoSet : CacheService.getCachedLegoSets(ids).values()) {
+        found.put(legoSet.getId(), LegoSetSummary.from(legoSet));
+    }
+    List<String> misses = new ArrayList<>();
+    for (String id : ids) {
+        if (!found.containsKey(id)) {
+            misses.add(id);
+        }
+    }
+    if (!misses.isEmpty()) {
+        for (LegoSetSummary summary : dbLayer.getLegoSetSummariesByIds(misses)) {
+            found.put(summary.getId(), summary);
+        }
+    }
+
+    List<LegoSetSummary> summaries = new ArrayList<>();
+    for (String id : ids) {
+        LegoSetSummary summary = found.get(id);
+        if (summary != null) {
+            summaries.add(summary);
+        }
+    }
+    return summaries;
+}
+
+// page de la liste des récents : Page (curseur) ou liste (st/len), en résumés
+private Object loadRecentLegoSets(boolean keyset, String cursor, int start, int limit) {
+    if (keyset) {
+        return dbLayer.getRecentLegoSetsPage(cursor, limit);
+    }
+    Iterator<LegoSetSummary> recentLegoSets = dbLayer.getRecentLegoSets(start, limit);
+    
+    List<LegoSetSummary> recentSets = new ArrayList<>();
+    while (recentLegoSets.hasNext()) {
+        recentSets.add(recentLegoSets.next());
+    }
+    return recentSets;
+}
+
 @GET
 @Path("/debug/database")
 @Produces(MediaType.APPLICATION_JSON)
@@ -332,7 +438,7 @@ public Response debugDatabase() {
         
         // 4. Liste de tous les LegoSets
         List<String> allLegoIds = new ArrayList<>();
-        Iterator<LegoSet> allSets = dbLayer.getLegoSets().iterator();
+        Iterator<LegoSet> allSets = dbLayer.getLegoSets(0, 0).iterator();
         int count = 0;
         while (allSets.hasNext()) {
             LegoSet set = allSets.next();
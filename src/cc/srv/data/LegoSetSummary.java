@@ -0,0 +1,47 @@
+package cc.srv.data;
+
+import java.util.Date;
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * LegoSet as shown in list views: name and cover photo, without the description nor the
+ * photo list. Read through a projection; the full LegoSet is for the detail view.
+ */
+public class LegoSetSummary {
+    private String id;
+    private String name;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSX")
+    private Date createdAt;
+    private String coverMediaId; // première photo du set, null s'il n'en a pas
+
+    public LegoSetSummary() {
+    }
+
+    // same fields as the projection, from a full LegoSet (e.g. one read from the cache)
+    public static LegoSetSummary from(LegoSet legoSet) {
+        LegoSetSummary summary = new LegoSetSummary();
+        summary.setId(legoSet.getId());
+        summary.setName(legoSet.getName());
+        summary.setCreatedAt(legoSet.getCreatedAt());
+        summary.setPhotoMediaIds(legoSet.getPhotoMediaIds());
+        return summary;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public String getCoverMediaId() { return coverMediaId; }
+    public void setCoverMediaId(String coverMediaId) { this.coverMediaId = coverMediaId; }
+
+    // decoded from the projected photoMediaIds, sliced to the first one
+    public void setPhotoMediaIds(List<String> photoMediaIds) {
+        this.coverMediaId = photoMediaIds != null && !photoMediaIds.isEmpty() ? photoMediaIds.get(0) : null;
+    }
+}
@@ -1,15 +1,28 @@
 package cc.srv.data;
 
 import cc.srv.cache.CacheService;
+import cc.srv.cache.CachedMedia;
+import cc.utils.Hash;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths ;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -19,6 +32,9 @@ import java.util.logging.Logger;
 public class MediaResource {
     private static final Logger logger = Logger.getLogger(MediaResource.class.getName());
     private final String UPLOAD_DIR = "/usr/local/tomcat/uploads";
+    private static final long MAX_UPLOAD_BYTES = Long.parseLong(System.getenv().getOrDefault("MEDIA_MAX_UPLOAD_BYTES", String.valueOf(20 * 1024 * 1024)));
+    private static final String TEMP_UPLOAD_PREFIX = ".upload-";
+    private static final int MEDIA_MAX_AGE_SECONDS = 365 * 24 * 3600;
     private final String BASE_URL = System.getenv().getOrDefault("UPLOAD_BASE_URL", "http://localhost:8080/LegoProject-1.0/media");
     public MediaResource() {
         try {
@@ -33,42 +49,87 @@ public class MediaResource {
     }
 
     /**
-     * Post a new media file to Azure Blob Storage
+     * Post a new media file. The body is streamed to a temp file in UPLOAD_DIR through a
+     * bounded buffer and hashed on the way; the media id is the SHA-256 of the content, so an
+     * upload identical to an existing media resolves to it and the temp file is dropped.
+     * Uploads above MAX_UPLOAD_BYTES get 413.
      */
 @POST
 @Path("/")
 @Consumes({"image/jpeg", "image/png", "application/octet-stream"}) 
 @Produces(MediaType.APPLICATION_JSON)
-public String upload(
+public Response upload(
         @HeaderParam("Content-Type") String contentType, 
-        byte[] contents) {
+        @HeaderParam("Content-Length") long declaredLength,
+        InputStream contents) {
     
+    java.nio.file.Path tempFile = null;
     try {
-        logger.info("Upload received - ContentType: " + contentType + ", Size: " + contents.length);
+        logger.info("Upload received - ContentType: " + contentType + ", Size: " + declaredLength);
+        if (declaredLength > MAX_UPLOAD_BYTES) {
+            return tooLarge();
+        }
 
-        // Générer un ID unique
-        String mediaId = UUID.randomUUID().toString();
-        
-        // Déterminer l'extension basée sur le Content-Type
-        String extension = getExtensionFromContentType(contentType);
-        mediaId += extension;
+        // écrire dans un fichier temporaire du même volume en calculant le hash au passage
+        tempFile = Files.createTempFile(Paths.get(UPLOAD_DIR), TEMP_UPLOAD_PREFIX, ".tmp");
+        MessageDigest digest = Hash.sha256();
+        if (copyLimited(contents, tempFile, digest) < 0) {
+            return tooLarge();
+        }
 
-        // Sauvegarder dans le volume local
-        java.nio.file.Path  filePath = Paths.get(UPLOAD_DIR, mediaId);
-        Files.copy(new ByteArrayInputStream(contents), filePath, StandardCopyOption.REPLACE_EXISTING);
+        // ID dérivé du contenu, extension basée sur le Content-Type
+        String mediaId = Hash.toHex(digest.digest()) + getExtensionFromContentType(contentType);
 
+        java.nio.file.Path filePath = Paths.get(UPLOAD_DIR, mediaId);
+        if (Files.exists(filePath)) {
+            // même contenu déjà stocké : rien à écrire
+            logger.info("Upload deduplicated: " + mediaId);
+            return Response.ok(mediaId).build();
+        }
+        // une course entre deux uploads identiques remplace le fichier par le même contenu
+        Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
+        tempFile = null;
 
         logger.info("File saved to local storage: " + mediaId);
 
         
-        return mediaId;
+        return Response.ok(mediaId).build();
         
     } catch (Exception e) {
         logger.severe("Upload error: " + e.getMessage());
-        return "{\"error\": \"Upload failed: " + e.getMessage() + "\"}";
+        return Response.status(500).entity("{\"error\": \"Upload failed: " + e.getMessage() + "\"}").build();
+    } finally {
+        if (tempFile != null) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                logger.warning("Cannot delete temp upload " + tempFile + ": " + e.getMessage());
+            }
+        }
+    }
+}
+
+/**
+ * Copies the stream to the file, hashing it on the way, and stops as soon as the limit is
+ * passed. Returns the number of bytes written, or -1 if the body is too large.
+ */
+private long copyLimited(InputStream in, java.nio.file.Path target, MessageDigest digest) throws IOException {
+    try (OutputStream out = Files.newOutputStream(target)) {
+        return Hash.copy(in, out, digest, MAX_UPLOAD_BYTES);
     }
 }
 
+// uploads in progress, not yet moved to their final name
+private boolean isTempUpload(java.nio.file.Path path) {
+    return path.getFileName().toString().startsWith(TEMP_UPLOAD_PREFIX);
+}
+
+private Response tooLarge() {
+    return Response.status(413)
+            .entity("{\"error\": \"Upload larger than " + MAX_UPLOAD_BYTES + " bytes\"}")
+            .build();
+}
+
 /**
  * Détermine l'extension basée sur le Content-Type
  */
@@ -89,50 +150,82 @@ private String getExtensionFromContentType(String contentType) {
     }
 }
     /**
-     * Return the contents of a media file from Azure Blob Storage
+     * Return the contents of a media file. Small files go through the Redis cache; the others
+     * are streamed from disk with FileChannel.transferTo, so memory per request stays constant.
+     * Honors single "Range: bytes=..." requests with 206 Partial Content.
+     *
+     * A media never changes once stored, so its id is a strong ETag: a matching If-None-Match
+     * gets a 304 before Redis or the disk are touched, and responses are cacheable for a year.
      */
     @GET
     @Path("/{id}")
-    public Response download(@PathParam("id") String id) {
+    public Response download(@PathParam("id") String id,
+                             @HeaderParam("Range") String range,
+                             @HeaderParam("If-Range") String ifRange,
+                             @Context Request request) {
         try {
-            logger.info("Download from Azure: " + id);
+            logger.info("Download: " + id);
             boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+
+            EntityTag etag = new EntityTag(id);
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return withCacheHeaders(notModified, id).build();
+            }
+            // If-Range avec un autre validateur : la plage ne s'applique pas
+            if (range != null && ifRange != null && !ifRange.trim().equals(etag.toString())) {
+                range = null;
+            }
         
-        // cache check
-        if (cacheEnabled) {
-            Map<String, String> cachedMedia = CacheService.getCachedMedia(id);
+        // cache check (full downloads only, ranges are served from disk)
+        if (cacheEnabled && range == null) {
+            CachedMedia cachedMedia = CacheService.getCachedMedia(id);
             if (cachedMedia != null) {
-                // get content and contentType from cache
-                byte[] content = Base64.getDecoder().decode(cachedMedia.get("content"));
-                String contentType = cachedMedia.get("contentType");
-                
-                return Response.ok(content)
-                        .type(contentType)
-                        .header("Content-Disposition", "inline; filename=\"" + id + "\"")
+                // raw bytes straight from Redis, no decoding
+                return withCacheHeaders(Response.ok(cachedMedia.getContent()), id)
+                        .type(cachedMedia.getContentType())
                         .build();
             }
         }
             
 
              // Lire depuis le stockage local
-            java.nio.file.Path  filePath = Paths.get(UPLOAD_DIR, id);
-            if (!Files.exists(filePath)) {
+            java.nio.file.Path filePath = Paths.get(UPLOAD_DIR, id).normalize();
+            if (!filePath.startsWith(Paths.get(UPLOAD_DIR)) || !Files.isRegularFile(filePath)) {
                 return Response.status(404).entity("Media not found: " + id).build();
             }
 
-            byte[] contents = Files.readAllBytes(filePath);
+            long size = Files.size(filePath);
             String contentType = determineContentType(id);
-            // cache it
-            if (cacheEnabled) {
+
+            if (range != null) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    // plusieurs plages ou syntaxe inconnue : on renvoie le fichier entier
+                    return streamFile(filePath, 0, size, 200, contentType, id).build();
+                }
+                if (bounds.length == 0) {
+                    return Response.status(416)
+                            .header("Content-Range", "bytes */" + size)
+                            .build();
+                }
+                long length = bounds[1] - bounds[0] + 1;
+                return streamFile(filePath, bounds[0], length, 206, contentType, id)
+                        .header("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size)
+                        .build();
+            }
+
+            // small files are read once and cached, the rest is streamed
+            if (cacheEnabled && CacheService.isMediaCacheable(size)) {
+                byte[] contents = Files.readAllBytes(filePath);
                 CacheService.cacheMedia(id, contents, contentType);
                 logger.info("Media " + id + " served from local storage and CACHED");
-            } else {
-                logger.info(" Media " + id + " served from local storage(no cache)");
+                return withCacheHeaders(Response.ok(contents), id)
+                        .type(contentType)
+                        .build();
             }
-            return Response.ok(contents)
-                    .type(contentType)
-                    .header("Content-Disposition", "inline; filename=\"" + id + "\"")
-                    .build();
+            logger.info(" Media " + id + " streamed from local storage");
+            return streamFile(filePath, 0, size, 200, contentType, id).build();
 
         } catch (Exception e) {
             logger.severe("Download error: " + e.getMessage());
@@ -140,6 +233,85 @@ private String getExtensionFromContentType(String contentType) {
         }
     }
 
+    /**
+     * Streams [start, start + length) of the file to the response. transferTo moves the data
+     * channel to channel in bounded chunks, the file is never loaded in the heap.
+     */
+    private Response.ResponseBuilder streamFile(java.nio.file.Path filePath, long start, long length,
+                                                int status, String contentType, String id) {
+        StreamingOutput body = output -> {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(output);
+                long position = start;
+                long remaining = length;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break; // fichier tronqué entre-temps
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        };
+        return withCacheHeaders(Response.status(status).entity(body), id)
+                .type(contentType)
+                .header("Content-Length", length);
+    }
+
+    // media are immutable: strong ETag (the id) and a one-year, immutable Cache-Control
+    private Response.ResponseBuilder withCacheHeaders(Response.ResponseBuilder builder, String id) {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(MEDIA_MAX_AGE_SECONDS);
+        cacheControl.getCacheExtension().put("public", null);
+        cacheControl.getCacheExtension().put("immutable", null);
+        return builder
+                .tag(new EntityTag(id))
+                .cacheControl(cacheControl)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", "inline; filename=\"" + id + "\"");
+    }
+
+    /**
+     * Parses a single "bytes=a-b", "bytes=a-" or "bytes=-n" range against the file size.
+     * Returns {first, last} (inclusive), an empty array if unsatisfiable, or null if the header
+     * is not a single byte range (the whole file is then sent, as RFC 9110 allows).
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long first;
+            long last;
+            if (from.isEmpty()) {
+                // suffixe : les n derniers octets
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                first = Math.max(0, size - suffix);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(from);
+                last = to.isEmpty() ? size - 1 : Math.min(Long.parseLong(to), size - 1);
+                if (first >= size || first > last) {
+                    return new long[0];
+                }
+            }
+            return new long[] { first, last };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Lists the ids of media files stored (version simplifiée)
      */
@@ -155,6 +327,7 @@ private String getExtensionFromContentType(String contentType) {
             if (Files.exists(uploadPath)) {
                 Files.list(uploadPath)
                      .filter(Files::isRegularFile)
+                     .filter(path -> !isTempUpload(path))
                      .forEach(path -> mediaList.add(path.getFileName().toString()));
             }
         } catch (Exception e) {
@@ -176,6 +349,7 @@ private String getExtensionFromContentType(String contentType) {
             if (Files.exists(uploadPath)) {
                 count = Files.list(uploadPath)
                             .filter(Files::isRegularFile)
+                            .filter(path -> !isTempUpload(path))
                             .count();
             }
             return "MediaResource with Local Storage! Files count: " + count + " in " + UPLOAD_DIR;
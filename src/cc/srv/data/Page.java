@@ -0,0 +1,28 @@
+package cc.srv.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a cursor-paginated listing.
+ * nextCursor is opaque to clients and null on the last page.
+ */
+public class Page<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    public Page() {
+        this.items = new ArrayList<>();
+    }
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -2,6 +2,8 @@ package cc.srv.data;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.*;
+import cc.srv.cache.CacheService;
+import cc.srv.db.MongoDBLayer;
 @Path("/test")
 public class TestRessource {
 @GET
@@ -9,4 +11,20 @@ public class TestRessource {
 public Response health() {
     return Response.ok("{\"status\": \"healthy\", \"version\": \"v2\"}").build();
 }
+
+// hit/miss counters for the L1 and Redis cache tiers
+@GET
+@Path("/cache/stats")
+@Produces(MediaType.APPLICATION_JSON)
+public Response cacheStats() {
+    return Response.ok(CacheService.getCacheStats()).build();
+}
+
+// winning plan of each MongoDBLayer query, "COLLSCAN" when no index is used
+@GET
+@Path("/db/query-plans")
+@Produces(MediaType.APPLICATION_JSON)
+public Response queryPlans() {
+    return Response.ok(MongoDBLayer.getInstance().checkQueryPlans()).build();
+}
 }
@@ -1,8 +1,11 @@
 package cc.srv.data;
 
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import cc.srv.cache.CacheEntry;
 import cc.srv.cache.CacheService;
 import cc.srv.db.MongoDBLayer;
 import java.util.ArrayList;
@@ -55,20 +58,16 @@ public String testDatabase() {
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllUsers() {
+    public Response getAllUsers(@QueryParam("st") int start, @QueryParam("len") int length) {
         
         try {
-            Iterator<User> usersIterator = dbLayer.getUsers().iterator();
-            List<User> userList = new ArrayList<>();
-            
-            while (usersIterator.hasNext()) {
-                User user = usersIterator.next();
-                userList.add(user);
-            }
+            // streamed from the cursor, one page (st/len) at a time
+            Iterator<User> usersIterator = dbLayer.getUsers(Math.max(start, 0), JsonResponses.listLimit(length)).iterator();
 
-            if (!userList.isEmpty()) {
-                return Response.ok(userList).build();
+            if (usersIterator.hasNext()) {
+                return JsonResponses.stream(usersIterator);
             } else {
+                JsonResponses.close(usersIterator);
                 return Response.status(404).entity("No users found").build();
             }
         } catch (Exception e) {
@@ -83,31 +82,24 @@ public String testDatabase() {
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getUserById(@PathParam("id") String id) {
+    public Response getUserById(@PathParam("id") String id, @Context Request request) {
         
         try {   
-        // // try to get user from cache
+        // cached JSON and its ETag, loaded from the database on a miss
         boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
         if (cacheEnabled) {
-            User cachedUser = CacheService.getCachedUser(id);
-            if (cachedUser != null) {
-                System.out.println("User " + id + " served from CACHE");
-                return Response.ok(cachedUser).build();
+            CacheEntry cachedUser = CacheService.getOrLoadUser(id, () -> dbLayer.getUserById(id));
+            if (cachedUser == null) {
+                return Response.status(404).entity("User not found with ID: " + id).build();
             }
+            return JsonResponses.ok(request, cachedUser);
         }
-            // if not in cache, get from database
+            // no cache: straight from the database
            User user = dbLayer.getUserById(id);
 
             if (user != null) {
-                
-                // put in cache 
-                if (cacheEnabled) {
-                CacheService.cacheUser(user);
-                System.out.println("User " + id + " served from DB and CACHED");
-            } else {
                 System.out.println("User " + id + " served from DB (no cache)");
-            }
-                return Response.ok(user).build();
+                return JsonResponses.ok(request, user);
             } else {
                 return Response.status(404).entity("User not found with ID: " + id).build();
             }
@@ -309,15 +301,16 @@ public Response getUserLegoSets(@PathParam("id") String userId) {
         // try to get from cache first
         boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
         if (cacheEnabled) {
-            List<LegoSet> cachedLegoSets = CacheService.getCachedUserLegoSets(userId);
+            byte[] cachedLegoSets = CacheService.getCachedUserLegoSetsJson(userId);
             if (cachedLegoSets != null) {
                 System.out.println("User LegoSets " + userId + " served from CACHE");
-                return Response.ok(cachedLegoSets).build();
+                return Response.ok(cachedLegoSets, MediaType.APPLICATION_JSON).build();
             }
         }
         // if not in cache, get from database
         User user = dbLayer.getUserById(userId);
-        if (user != null) {
+        // 404 pour un utilisateur inconnu (le test était inversé : tout utilisateur existant recevait 404)
+        if (user == null) {
             return Response.status(404).entity("User not found with ID: " + userId).build();
         }        
         // get list of owned LegoSet IDs
@@ -327,14 +320,8 @@ public Response getUserLegoSets(@PathParam("id") String userId) {
             return Response.status(404).entity("No LegoSets found for user: " + userId).build();
         }
 
-        // Récupérer les détails de chaque LegoSet
-        List<LegoSet> userLegoSets = new ArrayList<>();
-        for (String legoSetId : ownedLegoSetIds) {
-            LegoSet legoSet = dbLayer.getLegoSetById(legoSetId);
-            if (legoSet != null) {
-                userLegoSets.add(legoSet);
-            }
-        }
+        // Récupérer tous les LegoSets en un seul aller-retour (MGET puis $in pour les absents)
+        List<LegoSet> userLegoSets = LegoSetResource.getLegoSetsByIds(dbLayer, ownedLegoSetIds, cacheEnabled);
         // cache the result
         if (cacheEnabled) {
             CacheService.cacheUserLegoSets(userId, userLegoSets);
@@ -444,9 +431,10 @@ public Response addLegoSetToUser(
     @Produces(MediaType.APPLICATION_JSON)
     public Response getUserAuctions(@PathParam("id") String userId) {
         try {
-            Iterator<Auction> userAuctions = dbLayer.getAuctionsByUser(userId).iterator();
+            // résumés seulement (projection), le détail est sur GET /auction/{id}
+            Iterator<AuctionSummary> userAuctions = dbLayer.getAuctionSummariesByUser(userId).iterator();
             
-            List<Auction> auctionsList = new ArrayList<>();
+            List<AuctionSummary> auctionsList = new ArrayList<>();
             while (userAuctions.hasNext()) {
                 auctionsList.add(userAuctions.next());
             }
@@ -0,0 +1,162 @@
+package cc.srv.db;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Indexes.*;
+
+/**
+ * Declares the indexes each MongoDBLayer query needs and makes sure they exist.
+ * Also able to explain those queries and flag the ones still doing a COLLSCAN.
+ */
+public class IndexManager {
+    private static final Logger logger = Logger.getLogger(IndexManager.class.getName());
+
+    private static final class IndexSpec {
+        final String collection;
+        final Bson keys;
+
+        IndexSpec(String collection, Bson keys) {
+            this.collection = collection;
+            this.keys = keys;
+        }
+    }
+
+    private static final class QuerySpec {
+        final String name;
+        final String collection;
+        final Bson filter;
+        final Bson sort;
+
+        QuerySpec(String name, String collection, Bson filter, Bson sort) {
+            this.name = name;
+            this.collection = collection;
+            this.filter = filter;
+            this.sort = sort;
+        }
+    }
+
+    // Un index par forme de requête de MongoDBLayer
+    private static final List<IndexSpec> INDEXES = List.of(
+        new IndexSpec("Auctions", ascending("legoSetId")),
+        new IndexSpec("Auctions", ascending("sellerId")),
+        // _id en dernier : pagination des enchères expirées (getExpiredAuctions)
+        new IndexSpec("Auctions", compoundIndex(ascending("status"), ascending("closeDate"), ascending("_id"))),
+        new IndexSpec("Auctions", compoundIndex(descending("closeDate"), descending("_id"))),
+        new IndexSpec("Auctions", compoundIndex(ascending("status"), descending("highestBid.amount"), descending("_id"))),
+        new IndexSpec("LegoSets", compoundIndex(descending("createdAt"), descending("_id"))),
+        new IndexSpec("LegoSets", compoundIndex(ascending("isLiked"), descending("sentimentScore"))),
+        new IndexSpec("Comments", ascending("legoSetId")),
+        new IndexSpec("Comments", ascending("userId")),
+        new IndexSpec("Bids", compoundIndex(ascending("auctionId"), descending("createdAt"), descending("_id")))
+    );
+
+    // Requêtes représentatives, utilisées par checkQueryPlans()
+    private static final List<QuerySpec> QUERIES = List.of(
+        new QuerySpec("getAuctionSummariesByLegoSetId", "Auctions", eq("legoSetId", ""), null),
+        new QuerySpec("getAuctionsByUser", "Auctions", eq("sellerId", ""), null),
+        new QuerySpec("getActiveAuctions", "Auctions", eq("status", "ACTIVE"), ascending("closeDate")),
+        new QuerySpec("getExpiredAuctions", "Auctions", and(eq("status", "ACTIVE"), lte("closeDate", new Date())), ascending("closeDate", "_id")),
+        new QuerySpec("getRecentAuctions", "Auctions", new Document(), descending("closeDate", "_id")),
+        new QuerySpec("getTopBidAuctions", "Auctions", and(eq("status", "ACTIVE"), ne("highestBid", null)), descending("highestBid.amount", "_id")),
+        new QuerySpec("getRecentLegoSets", "LegoSets", new Document(), descending("createdAt", "_id")),
+        new QuerySpec("getMostLikedLegoSets", "LegoSets", and(exists("sentimentScore"), eq("isLiked", true)), descending("sentimentScore")),
+        new QuerySpec("getCommentsByLegoSetId", "Comments", eq("legoSetId", ""), null),
+        new QuerySpec("getCommentsByUser", "Comments", eq("userId", ""), null),
+        new QuerySpec("getBidsByAuction", "Bids", eq("auctionId", ""), descending("createdAt", "_id"))
+    );
+
+    /**
+     * Create every declared index that is missing. Logs each index it builds.
+     */
+    public static void ensureIndexes(MongoDatabase db) {
+        for (IndexSpec spec : INDEXES) {
+            MongoCollection<Document> collection = db.getCollection(spec.collection);
+            BsonDocument keys = toBson(spec.keys);
+            try {
+                if (hasIndex(collection, keys)) {
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                String name = collection.createIndex(spec.keys);
+                logger.info("Built index " + name + " on " + spec.collection + " in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                logger.warning("Could not create index " + keys.toJson() + " on " + spec.collection + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Explain each declared query and report its winning plan stages.
+     * Queries falling back to a collection scan are flagged "COLLSCAN" and logged.
+     */
+    public static Map<String, String> checkQueryPlans(MongoDatabase db) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (QuerySpec query : QUERIES) {
+            try {
+                FindIterable<Document> find = db.getCollection(query.collection).find(query.filter);
+                if (query.sort != null) {
+                    find = find.sort(query.sort);
+                }
+                Document plan = find.explain(ExplainVerbosity.QUERY_PLANNER);
+                List<String> stages = new ArrayList<>();
+                Document queryPlanner = plan.get("queryPlanner", Document.class);
+                collectStages(queryPlanner != null ? queryPlanner.get("winningPlan") : plan, stages);
+
+                if (stages.contains("COLLSCAN")) {
+                    logger.warning("Query " + query.name + " on " + query.collection + " uses a COLLSCAN");
+                    result.put(query.name, "COLLSCAN");
+                } else {
+                    result.put(query.name, String.join(" <- ", stages));
+                }
+            } catch (Exception e) {
+                result.put(query.name, "ERROR: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasIndex(MongoCollection<Document> collection, BsonDocument keys) {
+        for (Document index : collection.listIndexes()) {
+            Document key = index.get("key", Document.class);
+            if (key != null && toBson(key).equals(keys)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BsonDocument toBson(Bson bson) {
+        return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    // walks the plan tree (inputStage, inputStages, queryPlan...) collecting "stage" values
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document) {
+            Document doc = (Document) node;
+            Object stage = doc.get("stage");
+            if (stage instanceof String) {
+                stages.add((String) stage);
+            }
+            for (Object value : doc.values()) {
+                collectStages(value, stages);
+            }
+        } else if (node instanceof List) {
+            for (Object value : (List<?>) node) {
+                collectStages(value, stages);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package cc.srv.db;
+
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.ClassModel;
+import org.bson.codecs.pojo.ClassModelBuilder;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import com.mongodb.MongoClientSettings;
+import cc.srv.data.Auction;
+import cc.srv.data.AuctionBid;
+import cc.srv.data.AuctionSummary;
+import cc.srv.data.Comment;
+import cc.srv.data.LegoSet;
+import cc.srv.data.LegoSetSummary;
+import cc.srv.data.User;
+
+/**
+ * Codecs that let the driver decode BSON straight into the data classes (and encode them
+ * back), without an intermediate Document per entity.
+ *
+ * The default conventions map the "id" property to "_id". Field names that differ from
+ * the Java properties are mapped here rather than with annotations on the data classes.
+ */
+public class MongoCodecs {
+
+    public static CodecRegistry registry() {
+        // Auction exposes highestBid through get/setCurrentWinningBid; placeBid and its
+        // filters work on "highestBid"
+        ClassModelBuilder<Auction> auction = ClassModel.builder(Auction.class);
+        auction.removeProperty("highestBid");
+        auction.getProperty("currentWinningBid").readName("highestBid").writeName("highestBid");
+
+        PojoCodecProvider pojos = PojoCodecProvider.builder()
+            .register(auction.build())
+            .register(User.class, AuctionBid.class, LegoSet.class, Comment.class)
+            // list views, decoded from projected queries
+            .register(AuctionSummary.class, LegoSetSummary.class)
+            .build();
+
+        return CodecRegistries.fromRegistries(
+            MongoClientSettings.getDefaultCodecRegistry(),
+            CodecRegistries.fromProviders(pojos));
+    }
+}
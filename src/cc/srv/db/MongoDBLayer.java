@@ -1,14 +1,29 @@
 package cc.srv.db;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
 import java.util.logging.Logger;
 import org.bson.Document;
 import org.bson.types.ObjectId;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import cc.srv.data.User;
@@ -16,8 +31,12 @@ import cc.srv.data.Auction;
 import cc.srv.data.LegoSet;
 import cc.srv.data.Comment;
 import cc.srv.data.AuctionBid;
+import cc.srv.data.AuctionSummary;
+import cc.srv.data.LegoSetSummary;
+import cc.srv.data.Page;
 import static com.mongodb.client.model.Filters.*;
 import static com.mongodb.client.model.Updates.*;
+import org.bson.conversions.Bson;
 import java.util.Iterator;
 import java.util.Collections;
 
@@ -25,16 +44,31 @@ import java.util.Collections;
 public class MongoDBLayer {
     private MongoClient client;
     private MongoDatabase db;
-    private MongoCollection<Document> users;
-    private MongoCollection<Document> auctions;
-    private MongoCollection<Document> legosets;
-    private MongoCollection<Document> comments;
+    // décodées directement en objets par les codecs de MongoCodecs
+    private MongoCollection<User> users;
+    private MongoCollection<Auction> auctions;
+    private MongoCollection<LegoSet> legosets;
+    private MongoCollection<Comment> comments;
+    private MongoCollection<AuctionBid> bids;
+    // mêmes collections, lues en projection pour les vues liste
+    private MongoCollection<AuctionSummary> auctionSummaries;
+    private MongoCollection<LegoSetSummary> legoSetSummaries;
+    // true once no auction document holds an embedded "bids" array any more
+    private volatile boolean embeddedBidsMigrated;
+
+    // only the fields the summaries show leave the server
+    private static final Bson AUCTION_SUMMARY = Projections.include(
+        "legoSetId", "sellerId", "basePrice", "closeDate", "status", "bidCount", "highestBid.amount");
+    private static final Bson LEGOSET_SUMMARY = Projections.fields(
+        Projections.include("name", "createdAt"), Projections.slice("photoMediaIds", 1));
     
     private static MongoDBLayer instance;
 
     // Configuration MongoDB
     private static final String MONGODB_URI = System.getenv("MONGODB_URI");
+    private static final int BID_HISTORY_ATTEMPTS = 3;
     private static final String DB_NAME = "legodb";
+    private static final boolean ENSURE_INDEXES = Boolean.parseBoolean(System.getenv().getOrDefault("MONGODB_ENSURE_INDEXES", "true"));
 
     public static synchronized MongoDBLayer getInstance() {
         if (instance != null)
@@ -52,27 +86,49 @@ public class MongoDBLayer {
     private synchronized void init() {
         if (db != null)
             return;
-        db = client.getDatabase(DB_NAME);
+        db = client.getDatabase(DB_NAME).withCodecRegistry(MongoCodecs.registry());
          // Créer les collections si elles n'existent pas
     if (!collectionExists("Users")) {
         db.createCollection("Users");
     }
-    users = db.getCollection("Users");
+    users = db.getCollection("Users", User.class);
     
     if (!collectionExists("Auctions")) {
         db.createCollection("Auctions");
     }
-    auctions = db.getCollection("Auctions");
+    auctions = db.getCollection("Auctions", Auction.class);
     
     if (!collectionExists("LegoSets")) {
         db.createCollection("LegoSets");
     }
-    legosets = db.getCollection("LegoSets");
+    legosets = db.getCollection("LegoSets", LegoSet.class);
+    auctionSummaries = auctions.withDocumentClass(AuctionSummary.class);
+    legoSetSummaries = legosets.withDocumentClass(LegoSetSummary.class);
     
     if (!collectionExists("Comments")) {
         db.createCollection("Comments");
     }
-    comments = db.getCollection("Comments");
+    comments = db.getCollection("Comments", Comment.class);
+
+    // Historique des enchères, séparé des Auctions pour garder leur taille constante
+    if (!collectionExists("Bids")) {
+        db.createCollection("Bids");
+    }
+    bids = db.getCollection("Bids", AuctionBid.class);
+
+    // Index nécessaires aux requêtes ci-dessous (sinon COLLSCAN), construits en arrière-plan :
+    // sur une grosse collection, init() et les requêtes qui l'attendent ne bloquent pas
+    if (ENSURE_INDEXES) {
+        MongoDatabase database = db;
+        Thread indexBuild = new Thread(() -> IndexManager.ensureIndexes(database), "mongodb-index-build");
+        indexBuild.setDaemon(true);
+        indexBuild.start();
+    }
+    // l'historique embarqué des anciennes enchères passe dans Bids, une fois pour toutes ;
+    // d'ici là getBidsByAuction migre à la demande l'enchère qu'il lit
+    Thread bidsMigration = new Thread(this::migrateEmbeddedBids, "mongodb-bids-migration");
+    bidsMigration.setDaemon(true);
+    bidsMigration.start();
     }
 
     private boolean collectionExists(String collectionName) {
@@ -104,17 +160,8 @@ public class MongoDBLayer {
     public String putUser(User user) {
         init();
         try {
-            Document doc = new Document();
-            if (user.getId() != null && !user.getId().isEmpty()) {
-                doc.put("_id", user.getId());
-            }
-            doc.put("name", user.getName());
-            doc.put("password", user.getPassword());
-            doc.put("photoMediaId", user.getPhotoMediaId());
-            doc.put("ownedLegoSets", user.getOwnedLegoSets());
-            
-            users.insertOne(doc);
-            return doc.getString("_id");
+            users.insertOne(user);
+            return user.getId();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error creating user: " + e.getMessage());
             return null;
@@ -124,25 +171,23 @@ public class MongoDBLayer {
     public User getUserById(String id) {
         init();
         try {
-            Document doc = users.find(eq("_id", id)).first();
-            return doc != null ? documentToUser(doc) : null;
+            return users.find(eq("_id", id)).first();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).warning("Error getting user by id: " + e.getMessage());
             return null;
         }
     }
 
-    public List<User> getUsers() {
+    /**
+     * Users in _id order, decoded one by one while the caller iterates: nothing is
+     * materialized. limit 0 means no limit.
+     */
+    public MongoIterable<User> getUsers(int start, int limit) {
         init();
-        List<User> userList = new ArrayList<>();
-        try {
-            for (Document doc : users.find()) {
-                userList.add(documentToUser(doc));
-            }
-        } catch (Exception e) {
-            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting users: " + e.getMessage());
-        }
-        return userList;
+        return users.find()
+                    .sort(new Document("_id", 1))
+                    .skip(start)
+                    .limit(limit);
     }
 
     // Test de connexion
@@ -156,6 +201,12 @@ public class MongoDBLayer {
         }
     }
     
+    // Plan d'exécution de chaque requête, signale les COLLSCAN
+    public Map<String, String> checkQueryPlans() {
+        init();
+        return IndexManager.checkQueryPlans(db);
+    }
+    
     // Compter les utilisateurs
     public long countUsers() {
         init();
@@ -166,13 +217,7 @@ public class MongoDBLayer {
     public boolean updateUser(User user) {
         init();
         try {
-            Document doc = new Document();
-            doc.put("name", user.getName());
-            doc.put("password", user.getPassword());
-            doc.put("photoMediaId", user.getPhotoMediaId());
-            doc.put("ownedLegoSets", user.getOwnedLegoSets());
-            
-            UpdateResult result = users.replaceOne(eq("_id", user.getId()), doc);
+            UpdateResult result = users.replaceOne(eq("_id", user.getId()), user);
             return result.getModifiedCount() > 0;
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error updating user: " + e.getMessage());
@@ -185,21 +230,8 @@ public class MongoDBLayer {
     public String putAuction(Auction auction) {
         init();
         try {
-            Document doc = new Document();
-            if (auction.getId() != null && !auction.getId().isEmpty()) {
-                doc.put("_id", auction.getId());
-            }
-            doc.put("legoSetId", auction.getLegoSetId());
-            doc.put("sellerId", auction.getSellerId());
-            doc.put("basePrice", auction.getBasePrice());
-            doc.put("closeDate", auction.getCloseDate());
-            doc.put("status", auction.getStatus());
-            doc.put("bids", auction.getBids());
-            doc.put("highestBid", auction.getCurrentWinningBid());
-
-            
-            auctions.insertOne(doc);
-            return doc.getString("_id");
+            auctions.insertOne(auction);
+            return auction.getId();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error creating auction: " + e.getMessage());
             return null;
@@ -209,53 +241,141 @@ public class MongoDBLayer {
     public Auction getAuctionById(String id) {
         init();
         try {
-            Document doc = auctions.find(eq("_id", id)).first();
-            return doc != null ? documentToAuction(doc) : null;
+            return auctions.find(eq("_id", id)).first();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).warning("Error getting auction by id: " + e.getMessage());
             return null;
         }
     }
     
-    public List<Auction> getAuctions() {
+    // lazy, see getUsers
+    public MongoIterable<Auction> getAuctions(int start, int limit) {
+        init();
+        return auctions.find()
+                       .sort(new Document("_id", 1))
+                       .skip(start)
+                       .limit(limit);
+    }
+    
+    // lazy, ending soonest first (served by the status/closeDate index)
+    public MongoIterable<Auction> getActiveAuctions(int start, int limit) {
+        init();
+        return auctions.find(eq("status", "ACTIVE"))
+                       .sort(new Document("closeDate", 1))
+                       .skip(start)
+                       .limit(limit);
+    }
+    
+    /**
+     * Fetch several auctions in one round trip ($in on _id)
+     */
+    public List<Auction> getAuctionsByIds(Collection<String> ids) {
         init();
         List<Auction> auctionList = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return auctionList;
+        }
         try {
-            for (Document doc : auctions.find()) {
-                auctionList.add(documentToAuction(doc));
-            }
+            auctions.find(in("_id", ids)).into(auctionList);
         } catch (Exception e) {
-            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting auctions: " + e.getMessage());
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting auctions by ids: " + e.getMessage());
         }
         return auctionList;
     }
-    
-    public List<Auction> getActiveAuctions() {
+
+    // every auction, projected, to rebuild the Redis list indexes (lazy, see getUsers)
+    public MongoIterable<AuctionSummary> getAllAuctionSummaries() {
+        init();
+        return auctionSummaries.find().projection(AUCTION_SUMMARY);
+    }
+
+    /**
+     * Active auctions with the highest bids first (lazy, see getUsers)
+     */
+    public MongoIterable<Auction> getTopBidAuctions(int start, int limit) {
+        init();
+        return auctions.find(and(eq("status", "ACTIVE"), ne("highestBid", null)))
+                       .sort(new Document("highestBid.amount", -1).append("_id", -1))
+                       .skip(start)
+                       .limit(limit);
+    }
+
+    // id and closeDate of every active auction, for the closing scheduler (lazy, see getUsers)
+    public MongoIterable<AuctionSummary> getActiveAuctionSummaries() {
+        init();
+        return auctionSummaries.find(eq("status", "ACTIVE")).projection(AUCTION_SUMMARY);
+    }
+
+    /**
+     * Ends an auction whose closeDate has passed. Conditional, so concurrent closers and
+     * late bids cannot race: returns the ended auction, or null if it was not ACTIVE,
+     * not due yet, or not found.
+     */
+    public Auction closeAuction(String auctionId) {
         init();
-        List<Auction> auctionList = new ArrayList<>();
         try {
-            for (Document doc : auctions.find(eq("status", "ACTIVE"))) {
-                auctionList.add(documentToAuction(doc));
+            Bson filter = and(
+                eq("_id", auctionId),
+                eq("status", "ACTIVE"),
+                lte("closeDate", new Date()));
+            return auctions.findOneAndUpdate(filter, set("status", "ENDED"),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error closing auction " + auctionId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * One page of the auctions still ACTIVE past their closeDate, oldest first, keyset
+     * paginated on (closeDate, _id) so that closing a page does not shift the next one.
+     */
+    public List<AuctionSummary> getExpiredAuctions(Date now, PageCursor after, int limit) {
+        init();
+        try {
+            Bson filter = and(eq("status", "ACTIVE"), lte("closeDate", now));
+            if (after != null) {
+                filter = and(filter, or(
+                    gt("closeDate", after.getDate()),
+                    and(eq("closeDate", after.getDate()), gt("_id", after.getId()))));
             }
+            return auctionSummaries.find(filter)
+                                   .projection(AUCTION_SUMMARY)
+                                   .sort(new Document("closeDate", 1).append("_id", 1))
+                                   .limit(limit)
+                                   .into(new ArrayList<>());
         } catch (Exception e) {
-            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting active auctions: " + e.getMessage());
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting expired auctions: " + e.getMessage());
+            return Collections.emptyList();
         }
-        return auctionList;
     }
-    
+
+    /**
+     * Ends a batch of expired auctions in a single updateMany; same conditions as
+     * closeAuction. Returns the number of auctions actually ended.
+     */
+    public long closeAuctions(Collection<String> auctionIds, Date now) {
+        init();
+        if (auctionIds.isEmpty()) {
+            return 0;
+        }
+        UpdateResult result = auctions.updateMany(
+            and(in("_id", auctionIds), eq("status", "ACTIVE"), lte("closeDate", now)),
+            set("status", "ENDED"));
+        return result.getModifiedCount();
+    }
+
     public boolean updateAuction(Auction auction) {
         init();
         try {
-            Document doc = new Document();
-            doc.put("legoSetId", auction.getLegoSetId());
-            doc.put("sellerId", auction.getSellerId());
-            doc.put("basePrice", auction.getBasePrice());
-            doc.put("closeDate", auction.getCloseDate());
-            doc.put("status", auction.getStatus());
-            doc.put("bids", auction.getBids());
-            doc.put("highestBid", auction.getCurrentWinningBid());
-            
-            UpdateResult result = auctions.replaceOne(eq("_id", auction.getId()), doc);
+            // highestBid/bidCount ne sont écrits que par placeBid : un $set évite
+            // d'écraser une enchère concurrente avec un objet Auction périmé
+            UpdateResult result = auctions.updateOne(eq("_id", auction.getId()), combine(
+                set("legoSetId", auction.getLegoSetId()),
+                set("sellerId", auction.getSellerId()),
+                set("basePrice", auction.getBasePrice()),
+                set("closeDate", auction.getCloseDate()),
+                set("status", auction.getStatus())));
             return result.getModifiedCount() > 0;
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error updating auction: " + e.getMessage());
@@ -263,6 +383,158 @@ public class MongoDBLayer {
         }
     }
     
+    /**
+     * Place a bid atomically: the bid becomes highestBid only if the auction is still
+     * active and the amount beats both the base price and the current highest bid.
+     * Concurrent bids are arbitrated by MongoDB, no read-modify-replace. Accepted bids
+     * are then appended to the Bids collection.
+     * Returns the updated auction, or null if the bid was rejected. A DB error on the
+     * update is thrown (the bid may or may not be in); once the update applied the bid
+     * is accepted, whatever happens to its history row.
+     */
+    public Auction placeBid(String auctionId, AuctionBid bid) {
+        init();
+        double amount = bid.getAmount();
+        Bson filter = and(
+            eq("_id", auctionId),
+            eq("status", "ACTIVE"),
+            gt("closeDate", new Date()),
+            lte("basePrice", amount),
+            or(eq("highestBid", null), lt("highestBid.amount", amount)));
+
+        if (bid.getCreatedAt() == null) {
+            bid.setCreatedAt(new Date());
+        }
+        Auction updated = auctions.findOneAndUpdate(filter,
+            combine(set("highestBid", bid), inc("bidCount", 1)),
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        if (updated == null) {
+            return null;
+        }
+        appendBidHistory(auctionId, bid);
+        return updated;
+    }
+
+    // upsert on (_id, auctionId): a retry, or a client resending the same bid, never
+    // duplicates the row; an id already used by a bid of another auction fails instead
+    private void appendBidHistory(String auctionId, AuctionBid bid) {
+        Bson byId = and(eq("_id", bid.getId()), eq("auctionId", auctionId));
+        for (int attempt = 1; attempt <= BID_HISTORY_ATTEMPTS; attempt++) {
+            try {
+                bids.replaceOne(byId, bid, new ReplaceOptions().upsert(true));
+                return;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                    break; // retrying cannot help
+                }
+                Logger.getLogger(MongoDBLayer.class.getName()).warning("Error writing bid " + bid.getId() + " of auction "
+                    + auctionId + " to history (attempt " + attempt + "/" + BID_HISTORY_ATTEMPTS + "): " + e.getMessage());
+            } catch (Exception e) {
+                Logger.getLogger(MongoDBLayer.class.getName()).warning("Error writing bid " + bid.getId() + " of auction "
+                    + auctionId + " to history (attempt " + attempt + "/" + BID_HISTORY_ATTEMPTS + "): " + e.getMessage());
+            }
+        }
+        Logger.getLogger(MongoDBLayer.class.getName()).severe("Bid " + bid.getId() + " accepted on auction " + auctionId
+            + " but missing from its history");
+    }
+
+    /**
+     * Bid history of an auction, newest first, paginated on (createdAt, _id)
+     * using the auctionId/createdAt index. cursor is the nextCursor of the previous page.
+     * Until the startup migration is done, a first page moves the auction's embedded
+     * history (auctions written before the Bids collection) into Bids before reading.
+     */
+    public Page<AuctionBid> getBidsByAuction(String auctionId, String cursor, int limit) {
+        init();
+        PageCursor after = PageCursor.decode(cursor);
+        try {
+            if (after == null && !embeddedBidsMigrated) {
+                try {
+                    migrateEmbeddedBids(auctionId);
+                } catch (Exception e) {
+                    Logger.getLogger(MongoDBLayer.class.getName()).warning("Error migrating embedded bids of auction " + auctionId + ": " + e.getMessage());
+                }
+            }
+            Bson filter = eq("auctionId", auctionId);
+            if (after != null) {
+                filter = and(filter, keysetAfter("createdAt", after));
+            }
+            List<AuctionBid> bidList = bids.find(filter)
+                                           .sort(new Document("createdAt", -1).append("_id", -1))
+                                           .limit(limit + 1)
+                                           .into(new ArrayList<>());
+            return toPage(bidList, limit, bid -> new PageCursor(bid.getCreatedAt(), bid.getId()));
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting bids for auction " + auctionId + ": " + e.getMessage());
+            return new Page<>();
+        }
+    }
+    
+    /**
+     * Moves the embedded "bids" arrays of auctions written before the Bids collection into
+     * it, then unsets them. Safe to run on every replica at once: rows are upserted on
+     * (_id, auctionId) and an array is only unset once all its bids are in.
+     */
+    private void migrateEmbeddedBids() {
+        try {
+            List<Object> ids = auctions.withDocumentClass(Document.class)
+                                       .find(exists("bids"))
+                                       .projection(Projections.include("_id"))
+                                       .map(doc -> doc.get("_id"))
+                                       .into(new ArrayList<>());
+            int migrated = 0;
+            for (Object id : ids) {
+                if (migrateEmbeddedBids(id)) {
+                    migrated++;
+                }
+            }
+            embeddedBidsMigrated = true;
+            Logger.getLogger(MongoDBLayer.class.getName()).info("Embedded bid histories migrated: " + migrated + "/" + ids.size() + " auctions");
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error migrating embedded bid histories: " + e.getMessage());
+        }
+    }
+
+    // true if the auction had an embedded history and it is now in Bids
+    private boolean migrateEmbeddedBids(Object auctionId) {
+        Document auction = auctions.withDocumentClass(Document.class)
+                                   .find(and(eq("_id", auctionId), exists("bids")))
+                                   .projection(Projections.include("bids"))
+                                   .first();
+        if (auction == null) {
+            return false;
+        }
+        List<Document> embedded = auction.getList("bids", Document.class, Collections.emptyList());
+        List<ReplaceOneModel<Document>> rows = new ArrayList<>();
+        for (int i = 0; i < embedded.size(); i++) {
+            Document bid = new Document(embedded.get(i));
+            if (bid.get("_id") == null) {
+                bid.put("_id", UUID.randomUUID().toString());
+            }
+            bid.put("auctionId", auctionId.toString());
+            if (bid.get("createdAt") == null) {
+                // date inconnue : avant toute offre datée, dans l'ordre du tableau
+                bid.put("createdAt", new Date(i));
+            }
+            rows.add(new ReplaceOneModel<>(and(eq("_id", bid.get("_id")), eq("auctionId", auctionId.toString())), bid,
+                new ReplaceOptions().upsert(true)));
+        }
+        if (!rows.isEmpty()) {
+            try {
+                bids.withDocumentClass(Document.class).bulkWrite(rows, new BulkWriteOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                // an id already used by a bid of another auction: that row is skipped, as in appendBidHistory
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        auctions.updateOne(eq("_id", auctionId), unset("bids"));
+        return true;
+    }
+
     public boolean delAuctionById(String id) {
         init();
         try {
@@ -278,28 +550,36 @@ public class MongoDBLayer {
      * Get auctions by seller (userId)
      */
     public List<Auction> getAuctionsByUser(String userId) {
+        init();
         List<Auction> userAuctions = new ArrayList<>();
         try {
-            for (Document doc : auctions.find(eq("sellerId", userId))) {
-                userAuctions.add(documentToAuction(doc));
-            }
+            auctions.find(eq("sellerId", userId)).into(userAuctions);
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error retrieving auctions for user " + userId + ": " + e.getMessage());
         }
         return userAuctions;
     }
 
-// Get auctions by legoSetId
-    public List<Auction> getAuctionsByLegoSetId(String legoSetId) {
+    /**
+     * Auctions of a seller as list entries (projected, see AuctionSummary)
+     */
+    public List<AuctionSummary> getAuctionSummariesByUser(String userId) {
+        init();
+        List<AuctionSummary> userAuctions = new ArrayList<>();
+        try {
+            auctionSummaries.find(eq("sellerId", userId)).projection(AUCTION_SUMMARY).into(userAuctions);
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error retrieving auction summaries for user " + userId + ": " + e.getMessage());
+        }
+        return userAuctions;
+    }
+
+// Get auctions by legoSetId, as list entries (projected, see AuctionSummary)
+    public List<AuctionSummary> getAuctionSummariesByLegoSetId(String legoSetId) {
     init();
     try {
-        List<Auction> auctionList = new ArrayList<>();
-        
         //  Filtre par legoSetId
-        for (Document doc : auctions.find(eq("legoSetId", legoSetId))) {
-            auctionList.add(documentToAuction(doc));
-        }
-        return auctionList;
+        return auctionSummaries.find(eq("legoSetId", legoSetId)).projection(AUCTION_SUMMARY).into(new ArrayList<>());
     } catch (Exception e) {
         Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting auctions by legoSetId: " + e.getMessage());
         return Collections.emptyList();
@@ -309,13 +589,11 @@ public class MongoDBLayer {
 public Iterator<Auction> getRecentAuctions(int start, int limit) {
         init();
         try {
-            List<Auction> auctionList = new ArrayList<>();
-            for (Document doc : auctions.find()
-                                    .sort(new Document("closeDate", -1))
-                                    .skip(start)
-                                    .limit(limit)) {
-                auctionList.add(documentToAuction(doc));
-            }
+            List<Auction> auctionList = auctions.find()
+                                                .sort(new Document("closeDate", -1).append("_id", -1))
+                                                .skip(start)
+                                                .limit(limit)
+                                                .into(new ArrayList<>());
             return auctionList.iterator();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting auctions: " + e.getMessage());
@@ -324,21 +602,33 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
 }
 
 
+    /**
+     * Recent auctions (by closeDate, newest first) with keyset pagination:
+     * each page starts right after the cursor, served from the (closeDate, _id) index.
+     */
+    public Page<Auction> getRecentAuctionsPage(String cursor, int limit) {
+        init();
+        PageCursor after = PageCursor.decode(cursor);
+        try {
+            Bson filter = after != null ? keysetAfter("closeDate", after) : new Document();
+            List<Auction> auctionList = auctions.find(filter)
+                                                .sort(new Document("closeDate", -1).append("_id", -1))
+                                                .limit(limit + 1)
+                                                .into(new ArrayList<>());
+            return toPage(auctionList, limit, auction -> new PageCursor(auction.getCloseDate(), auction.getId()));
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting recent auctions page: " + e.getMessage());
+            return new Page<>();
+        }
+    }
+
     // --------------------- LegoSet methods ------------------- //
     
     public String putLegoSet(LegoSet legoSet) {
         init();
         try {
-            Document doc = new Document();
-            if (legoSet.getId() != null && !legoSet.getId().isEmpty()) {
-                doc.put("_id", legoSet.getId());
-            }
-            doc.put("name", legoSet.getName());
-            doc.put("description", legoSet.getDescription());
-            doc.put("photoMediaIds", legoSet.getPhotoMediaIds());
-            doc.put("createdAt", legoSet.getCreatedAt());
-            legosets.insertOne(doc);
-            return doc.getString("_id");
+            legosets.insertOne(legoSet);
+            return legoSet.getId();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error creating lego set: " + e.getMessage());
             return null;
@@ -348,36 +638,66 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
     public LegoSet getLegoSetById(String id) {
         init();
         try {
-            Document doc = legosets.find(eq("_id", id)).first();
-            return doc != null ? documentToLegoSet(doc) : null;
+            return legosets.find(eq("_id", id)).first();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).warning("Error getting lego set by id: " + e.getMessage());
             return null;
         }
     }
     
-    public List<LegoSet> getLegoSets() {
+    /**
+     * Fetch several LegoSets in one round trip ($in on _id)
+     */
+    public List<LegoSet> getLegoSetsByIds(Collection<String> ids) {
         init();
         List<LegoSet> legoSetList = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return legoSetList;
+        }
         try {
-            for (Document doc : legosets.find()) {
-                legoSetList.add(documentToLegoSet(doc));
-            }
+            legosets.find(in("_id", ids)).into(legoSetList);
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting lego sets by ids: " + e.getMessage());
+        }
+        return legoSetList;
+    }
+    
+    /**
+     * Several LegoSets as list entries in one round trip (projected, see LegoSetSummary)
+     */
+    public List<LegoSetSummary> getLegoSetSummariesByIds(Collection<String> ids) {
+        init();
+        List<LegoSetSummary> legoSetList = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return legoSetList;
+        }
+        try {
+            legoSetSummaries.find(in("_id", ids)).projection(LEGOSET_SUMMARY).into(legoSetList);
         } catch (Exception e) {
-            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting lego sets: " + e.getMessage());
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting lego set summaries by ids: " + e.getMessage());
         }
         return legoSetList;
     }
+
+    // every LegoSet, projected, to rebuild the Redis list indexes (lazy, see getUsers)
+    public MongoIterable<LegoSetSummary> getAllLegoSetSummaries() {
+        init();
+        return legoSetSummaries.find().projection(LEGOSET_SUMMARY);
+    }
+
+    // lazy, see getUsers
+    public MongoIterable<LegoSet> getLegoSets(int start, int limit) {
+        init();
+        return legosets.find()
+                       .sort(new Document("_id", 1))
+                       .skip(start)
+                       .limit(limit);
+    }
     
     public boolean updateLegoSet(LegoSet legoSet) {
         init();
         try {
-            Document doc = new Document();
-            doc.put("name", legoSet.getName());
-            doc.put("description", legoSet.getDescription());
-            doc.put("photoMediaIds", legoSet.getPhotoMediaIds());
-            doc.put("createdAt", legoSet.getCreatedAt());
-            UpdateResult result = legosets.replaceOne(eq("_id", legoSet.getId()), doc);
+            UpdateResult result = legosets.replaceOne(eq("_id", legoSet.getId()), legoSet);
             return result.getModifiedCount() > 0;
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error updating lego set: " + e.getMessage());
@@ -401,16 +721,18 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
         return legosets.countDocuments();
     }
 
-    public Iterator<LegoSet> getRecentLegoSets(int start, int limit) {
+    /**
+     * Recent LegoSets as list entries (projected, see LegoSetSummary)
+     */
+    public Iterator<LegoSetSummary> getRecentLegoSets(int start, int limit) {
         init();
         try {
-            List<LegoSet> legoSetList = new ArrayList<>();
-            for (Document doc : legosets.find()
-                                    .sort(new Document("createdAt", -1))
-                                    .skip(start)
-                                    .limit(limit)) {
-                legoSetList.add(documentToLegoSet(doc));
-            }
+            List<LegoSetSummary> legoSetList = legoSetSummaries.find()
+                                                .projection(LEGOSET_SUMMARY)
+                                                .sort(new Document("createdAt", -1).append("_id", -1))
+                                                .skip(start)
+                                                .limit(limit)
+                                                .into(new ArrayList<>());
             return legoSetList.iterator();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting recent lego sets: " + e.getMessage());
@@ -418,20 +740,34 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
         }
 }
 
+    /**
+     * Recent LegoSets (by createdAt, newest first) with keyset pagination:
+     * each page starts right after the cursor, served from the (createdAt, _id) index.
+     */
+    public Page<LegoSetSummary> getRecentLegoSetsPage(String cursor, int limit) {
+        init();
+        PageCursor after = PageCursor.decode(cursor);
+        try {
+            Bson filter = after != null ? keysetAfter("createdAt", after) : new Document();
+            List<LegoSetSummary> legoSetList = legoSetSummaries.find(filter)
+                                                .projection(LEGOSET_SUMMARY)
+                                                .sort(new Document("createdAt", -1).append("_id", -1))
+                                                .limit(limit + 1)
+                                                .into(new ArrayList<>());
+            return toPage(legoSetList, limit, legoSet -> new PageCursor(legoSet.getCreatedAt(), legoSet.getId()));
+        } catch (Exception e) {
+            Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting recent lego sets page: " + e.getMessage());
+            return new Page<>();
+        }
+    }
+
     // --------------------- Comments Methods ------------------- //
     
     public String putComment(Comment comment) {
         init();
         try {
-            Document doc = new Document();
-            if (comment.getId() != null && !comment.getId().isEmpty()) {
-                doc.put("_id", comment.getId());
-            }
-            doc.put("legoSetId", comment.getLegoSetId());
-            doc.put("userId", comment.getUserId());
-            doc.put("content", comment.getContent());
-            comments.insertOne(doc);
-            return doc.getString("_id");
+            comments.insertOne(comment);
+            return comment.getId();
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error creating comment: " + e.getMessage());
             return null;
@@ -441,11 +777,7 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
     public boolean updateComment(Comment comment) {
         init();
         try {
-            Document doc = new Document();
-            doc.put("legoSetId", comment.getLegoSetId());
-            doc.put("userId", comment.getUserId());
-            doc.put("content", comment.getContent());
-            UpdateResult result = comments.replaceOne(eq("_id", comment.getId()), doc);
+            UpdateResult result = comments.replaceOne(eq("_id", comment.getId()), comment);
             return result.getModifiedCount() > 0;
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error updating comment: " + e.getMessage());
@@ -457,9 +789,7 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
         init();
         List<Comment> commentList = new ArrayList<>();
         try {
-            for (Document doc : comments.find(eq("legoSetId", legoSetId))) {
-                commentList.add(documentToComment(doc));
-            }
+            comments.find(eq("legoSetId", legoSetId)).into(commentList);
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting comments for lego set: " + e.getMessage());
         }
@@ -481,11 +811,10 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
      * Récupère tous les comments d'un user
      */
     public List<Comment> getCommentsByUser(String userId) {
+        init();
         List<Comment> userComments = new ArrayList<>();
         try {
-            for (Document doc : comments.find(eq("userId", userId))) {
-                userComments.add(documentToComment(doc));
-            }
+            comments.find(eq("userId", userId)).into(userComments);
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error retrieving comments for user " + userId + ": " + e.getMessage());
         }
@@ -500,72 +829,35 @@ public Iterator<Auction> getRecentAuctions(int start, int limit) {
 
     // Récupère les LegoSets les plus aimés
     public List<LegoSet> getMostLikedLegoSets(int limit) {
+        init();
         List<LegoSet> legoSetList = new ArrayList<>();
         try {
-            for (Document doc : legosets.find(and(exists("sentimentScore"), eq("isLiked", true)))
-                                       .sort(new Document("sentimentScore", -1))
-                                       .limit(limit)) {
-                legoSetList.add(documentToLegoSet(doc));
-            }
+            legosets.find(and(exists("sentimentScore"), eq("isLiked", true)))
+                    .sort(new Document("sentimentScore", -1))
+                    .limit(limit)
+                    .into(legoSetList);
         } catch (Exception e) {
             Logger.getLogger(MongoDBLayer.class.getName()).severe("Error getting most liked lego sets: " + e.getMessage());
         }
         return legoSetList;
     }
 
-    // --------------------- Conversion methods ------------------- //
-    
-    private User documentToUser(Document doc) {
-        if (doc == null) return null;
-        User user = new User();
-        user.setId(doc.getString("_id"));
-        user.setName(doc.getString("name"));
-        user.setPassword(doc.getString("password"));
-        user.setPhotoMediaId(doc.getString("photoMediaId"));
-        user.setOwnedLegoSets(doc.getList("OwnedLegoSets",String.class) != null ? 
-                              new java.util.HashSet<>(doc.getList("OwnedLegoSets", String.class)) : 
-                              new java.util.HashSet<>());
-        return user;
-    }
-    
-    private Auction documentToAuction(Document doc) {
-        if (doc == null) return null;
-        Auction auction = new Auction();
-        auction.setId(doc.getString("_id"));
-        auction.setLegoSetId(doc.getString("legoSetId"));
-        auction.setSellerId(doc.getString("sellerId"));
-        auction.setBasePrice(doc.getDouble("basePrice"));
-        auction.setCloseDate(doc.getDate("closeDate"));
-        auction.setStatus(doc.getString("status"));
-        auction.setBids(doc.getList("bids", AuctionBid.class));
-        auction.updateWinningBid();
-        return auction;
+    // --------------------- Pagination helpers ------------------- //
+
+    // Documents strictly after the cursor in a (field desc, _id desc) ordering
+    private static Bson keysetAfter(String dateField, PageCursor after) {
+        return or(
+            lt(dateField, after.getDate()),
+            and(eq(dateField, after.getDate()), lt("_id", after.getId())));
     }
-    
-  private LegoSet documentToLegoSet(Document doc) {
-    if (doc == null) return null;
-    LegoSet legoSet = new LegoSet();
-    legoSet.setId(doc.getString("_id"));
-    legoSet.setName(doc.getString("name"));
-    legoSet.setDescription(doc.getString("description"));
-    
-    List<String> photoMediaIds = doc.getList("photoMediaIds", String.class);
-    if (photoMediaIds != null) {
-        legoSet.setPhotoUrls(photoMediaIds);  
-    
-    
-}
-    legoSet.setCreatedAt(doc.getDate("createdAt"));
-    return legoSet;
-  }
-    
-    private Comment documentToComment(Document doc) {
-        if (doc == null) return null;
-        Comment comment = new Comment(); 
-        comment.setId(doc.getString("_id"));
-        comment.setLegoSetId(doc.getString("legoSetId"));
-        comment.setUserId(doc.getString("userId"));
-        comment.setContent(doc.getString("content"));
-        return comment;
+
+    // items holds up to limit + 1 elements; the extra one only tells that a next page exists
+    private static <T> Page<T> toPage(List<T> items, int limit, Function<T, PageCursor> cursorOf) {
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            nextCursor = cursorOf.apply(items.get(limit - 1)).encode();
+        }
+        return new Page<>(items, nextCursor);
     }
 }
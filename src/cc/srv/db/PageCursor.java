@@ -0,0 +1,43 @@
+package cc.srv.db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque continuation token for keyset pagination on (date, _id).
+ * Encoded as URL-safe base64 of "millis:id" so clients cannot depend on its shape.
+ */
+public class PageCursor {
+    private final Date date;
+    private final String id;
+
+    public PageCursor(Date date, String id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public Date getDate() { return date; }
+    public String getId() { return id; }
+
+    public String encode() {
+        String raw = (date != null ? date.getTime() : 0) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns null for a null/empty token; throws IllegalArgumentException for a malformed one.
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            return new PageCursor(new Date(Long.parseLong(raw.substring(0, sep))), raw.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
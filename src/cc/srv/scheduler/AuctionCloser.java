@@ -0,0 +1,154 @@
+package cc.srv.scheduler;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import com.mongodb.client.MongoCursor;
+import cc.srv.cache.CacheService;
+import cc.srv.cache.ListIndexes;
+import cc.srv.cache.RedisLock;
+import cc.srv.cache.StripedLock;
+import cc.srv.data.Auction;
+import cc.srv.data.AuctionEventHub;
+import cc.srv.data.AuctionSummary;
+import cc.srv.db.MongoDBLayer;
+
+/**
+ * Closes each auction at its closeDate, in-process, instead of waiting for the next
+ * polling run. Active auctions are loaded once at startup and new ones are added by
+ * AuctionResource.createAuction; each gets a timer in a TimingWheel.
+ *
+ * Every replica keeps the timers of every auction. A short Redis lease per auction lets
+ * only one of them do the close, and the close itself is a conditional update, so a
+ * replica that misses the lease (or Redis being down) can never close twice.
+ *
+ * The lease is left to expire after a close, so the timers of the other replicas, firing
+ * a few ms later, find it taken and stop there without touching the DB. If the holder
+ * dies before closing, ExpiredAuctionSweeper closes the auction on its next run.
+ */
+public class AuctionCloser {
+    private static final Logger logger = Logger.getLogger(AuctionCloser.class.getName());
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getenv().getOrDefault("AUCTION_CLOSER_ENABLED", "true"));
+    private static final long LEASE_MS = 30_000;
+    private static final long RELOAD_DELAY_MS = 30_000;
+    private static final String LEASE_PREFIX = "auction-close:";
+
+    private static final ExecutorService closeExecutor = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "auction-closer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // ticks of 1 ms: an auction closes within a few ms of its closeDate
+    private static final TimingWheel wheel = new TimingWheel(1, 64, closeExecutor);
+
+    private static volatile boolean started;
+
+    public static synchronized void start() {
+        if (!ENABLED || started) {
+            return;
+        }
+        started = true;
+        wheel.start("auction-closer-timer");
+        // chargement hors du thread de démarrage de l'application
+        closeExecutor.execute(AuctionCloser::loadActiveAuctions);
+    }
+
+    /**
+     * Arms the timer of a new auction.
+     */
+    public static void schedule(Auction auction) {
+        if (auction != null) {
+            schedule(auction.getId(), auction.getCloseDate());
+        }
+    }
+
+    public static int pendingCount() {
+        return wheel.size();
+    }
+
+    private static void schedule(String auctionId, Date closeDate) {
+        if (!started || auctionId == null || closeDate == null) {
+            return;
+        }
+        scheduleAt(closeDate.getTime(), auctionId);
+    }
+
+    private static void scheduleAt(long atMillis, String auctionId) {
+        wheel.schedule(atMillis, () -> close(auctionId));
+    }
+
+    private static void loadActiveAuctions() {
+        int count = 0;
+        try (MongoCursor<AuctionSummary> cursor = MongoDBLayer.getInstance().getActiveAuctionSummaries().iterator()) {
+            while (cursor.hasNext()) {
+                AuctionSummary auction = cursor.next();
+                schedule(auction.getId(), auction.getCloseDate());
+                count++;
+            }
+            logger.info("Auction closer armed for " + count + " active auctions");
+        } catch (Exception e) {
+            // les timers déjà armés restent valides, un doublon ne ferme qu'une fois
+            logger.severe("Error loading active auctions, retrying in " + RELOAD_DELAY_MS + " ms: " + e.getMessage());
+            wheel.schedule(System.currentTimeMillis() + RELOAD_DELAY_MS, AuctionCloser::loadActiveAuctions);
+        }
+    }
+
+    private static void close(String auctionId) {
+        String lease;
+        try {
+            lease = RedisLock.tryAcquire(LEASE_PREFIX + auctionId, LEASE_MS);
+            if (lease == null) {
+                // another replica has closed it or is closing it
+                return;
+            }
+        } catch (Exception e) {
+            // without Redis the conditional update alone keeps the close single
+            lease = null;
+        }
+
+        boolean failed = false;
+        try {
+            MongoDBLayer dbLayer = MongoDBLayer.getInstance();
+            boolean cacheEnabled = Boolean.parseBoolean(System.getenv("CACHE_ENABLED"));
+            // same ordering as placeBid: a bid accepted just before the close cannot cache its
+            // ACTIVE state after the ENDED one
+            Auction closed = StripedLock.AUCTIONS.withLock(auctionId, () -> {
+                Auction ended = dbLayer.closeAuction(auctionId);
+                if (ended != null && cacheEnabled) {
+                    // the cached auction shows ENDED right away, on every replica
+                    CacheService.cacheAuction(ended);
+                    // after any bid of this auction has moved it in top-bids, not before
+                    ListIndexes.auctionsClosed(List.of(auctionId));
+                }
+                return ended;
+            });
+            if (closed == null) {
+                // already closed, deleted, or its closeDate was pushed back
+                Auction current = dbLayer.getAuctionById(auctionId);
+                if (current != null && "ACTIVE".equals(current.getStatus()) && current.getCloseDate() != null
+                        && current.getCloseDate().getTime() > System.currentTimeMillis()) {
+                    schedule(auctionId, current.getCloseDate());
+                }
+                return;
+            }
+
+            logger.info("Closed auction " + auctionId + " - Bids: " + closed.getBidCount());
+            AuctionEventHub.publishClosed(auctionId);
+            if (cacheEnabled) {
+                CacheService.invalidateAuctionsByLegoSet(closed.getLegoSetId());
+            }
+        } catch (Exception e) {
+            failed = true;
+            logger.severe("Error closing auction " + auctionId + ", retrying in " + RELOAD_DELAY_MS + " ms: " + e.getMessage());
+            scheduleAt(System.currentTimeMillis() + RELOAD_DELAY_MS, auctionId);
+        } finally {
+            // après une fermeture réussie le bail expire seul : les autres réplicas s'arrêtent dessus
+            if (lease != null && failed) {
+                RedisLock.release(LEASE_PREFIX + auctionId, lease);
+            }
+        }
+    }
+}
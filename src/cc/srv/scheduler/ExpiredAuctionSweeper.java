@@ -0,0 +1,160 @@
+package cc.srv.scheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.logging.Logger;
+import cc.srv.cache.CacheService;
+import cc.srv.cache.ListIndexes;
+import cc.srv.data.AuctionEventHub;
+import cc.srv.data.AuctionSummary;
+import cc.srv.db.MongoDBLayer;
+import cc.srv.db.PageCursor;
+
+/**
+ * Closes every auction still ACTIVE past its closeDate, in batches: each page of expired
+ * auctions is ended with one updateMany and dropped from the cache and the list indexes
+ * with pipelined round trips. Up to PARALLELISM batches run at once while the next page is read, so a
+ * backlog (after an outage, say) drains at bulk speed instead of one auction at a time.
+ *
+ * Used by the timer function as a safety net behind AuctionCloser, and by
+ * AuctionCloserRunner to run it outside of Azure Functions.
+ */
+public class ExpiredAuctionSweeper {
+    private static final Logger logger = Logger.getLogger(ExpiredAuctionSweeper.class.getName());
+
+    static final int BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("AUCTION_CLOSER_BATCH_SIZE", "500"));
+    static final int PARALLELISM = Integer.parseInt(System.getenv().getOrDefault("AUCTION_CLOSER_PARALLELISM", "4"));
+
+    private final MongoDBLayer dbLayer;
+    private final boolean cacheEnabled;
+
+    public ExpiredAuctionSweeper(MongoDBLayer dbLayer, boolean cacheEnabled) {
+        this.dbLayer = dbLayer;
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public Summary run() throws InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        Date now = new Date(startedAt);
+        Summary summary = new Summary();
+
+        ExecutorService pool = Executors.newFixedThreadPool(PARALLELISM);
+        // au plus PARALLELISM lots en cours : la lecture n'avance pas plus vite que les écritures
+        Semaphore slots = new Semaphore(PARALLELISM);
+        List<Future<?>> batches = new ArrayList<>();
+        try {
+            PageCursor after = null;
+            while (true) {
+                List<AuctionSummary> page = dbLayer.getExpiredAuctions(now, after, BATCH_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                summary.found.addAndGet(page.size());
+                AuctionSummary last = page.get(page.size() - 1);
+                after = new PageCursor(last.getCloseDate(), last.getId());
+
+                slots.acquire();
+                batches.add(pool.submit(() -> {
+                    try {
+                        closeBatch(page, now, summary);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+                if (page.size() < BATCH_SIZE) {
+                    break;
+                }
+            }
+            for (Future<?> batch : batches) {
+                try {
+                    batch.get();
+                } catch (Exception e) {
+                    // already counted by closeBatch
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        summary.batches = batches.size();
+        summary.elapsedMs = System.currentTimeMillis() - startedAt;
+        return summary;
+    }
+
+    private void closeBatch(List<AuctionSummary> page, Date now, Summary summary) {
+        try {
+            List<String> ids = new ArrayList<>(page.size());
+            for (AuctionSummary auction : page) {
+                ids.add(auction.getId());
+            }
+            long closed = dbLayer.closeAuctions(ids, now);
+            summary.closed.addAndGet(closed);
+
+            // retard de fermeture, mesuré à l'écriture
+            long closedAt = System.currentTimeMillis();
+            for (AuctionSummary auction : page) {
+                long lag = closedAt - auction.getCloseDate().getTime();
+                summary.maxLagMs.accumulate(lag);
+                summary.totalLagMs.addAndGet(lag);
+            }
+            summary.measured.addAndGet(page.size());
+
+            if (cacheEnabled) {
+                CacheService.invalidateClosedAuctions(page);
+                // out of the ending-soon and top-bids indexes; recent keeps them, same closeDate
+                ListIndexes.auctionsClosed(ids);
+            }
+            // ends the SSE streams of these auctions (a repeated close event is harmless)
+            AuctionEventHub.publishClosed(ids);
+        } catch (Exception e) {
+            summary.failedBatches.incrementAndGet();
+            logger.severe("Error closing a batch of " + page.size() + " auctions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Outcome of one run: volumes, throughput, and how late the auctions were closed.
+     */
+    public static class Summary {
+        private final AtomicInteger found = new AtomicInteger();
+        private final AtomicLong closed = new AtomicLong();
+        private final AtomicInteger failedBatches = new AtomicInteger();
+        private final AtomicInteger measured = new AtomicInteger();
+        private final AtomicLong totalLagMs = new AtomicLong();
+        private final LongAccumulator maxLagMs = new LongAccumulator(Math::max, 0);
+        private int batches;
+        private long elapsedMs;
+
+        public int getFound() { return found.get(); }
+        public long getClosed() { return closed.get(); }
+        public int getBatches() { return batches; }
+        public int getFailedBatches() { return failedBatches.get(); }
+        public long getElapsedMs() { return elapsedMs; }
+        public long getMaxLagMs() { return maxLagMs.get(); }
+
+        public long getAvgLagMs() {
+            int count = measured.get();
+            return count == 0 ? 0 : totalLagMs.get() / count;
+        }
+
+        public double getThroughput() {
+            return elapsedMs == 0 ? closed.get() : closed.get() * 1000.0 / elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d expired auctions found, %d closed in %d batches (%d failed) in %d ms"
+                    + " - %.1f closes/s, lag avg %d ms, max %d ms",
+                getFound(), getClosed(), getBatches(), getFailedBatches(), getElapsedMs(),
+                getThroughput(), getAvgLagMs(), getMaxLagMs());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package cc.srv.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical timing wheel: runs tasks at a given wall-clock time (epoch millis).
+ *
+ * Each level has wheelSize buckets of tickMs; a task too far away for a level goes to the
+ * next, coarser one (created on demand) and moves down as its time approaches. Only
+ * non-empty buckets sit in a DelayQueue, so the timer thread sleeps until the next bucket
+ * is due instead of ticking: adding a task is O(1) whatever the number of pending tasks,
+ * and a task runs within one tick of its time.
+ *
+ * Tasks run on the given executor, never on the timer thread.
+ */
+public class TimingWheel {
+    private static final Logger logger = Logger.getLogger(TimingWheel.class.getName());
+
+    private final Executor executor;
+    private final DelayQueue<Bucket> queue = new DelayQueue<>();
+    private final Level root;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread thread;
+
+    public TimingWheel(long tickMs, int wheelSize, Executor executor) {
+        this.executor = executor;
+        this.root = new Level(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    /**
+     * Runs task at atMillis, or right away if that time has already passed.
+     */
+    public void schedule(long atMillis, Runnable task) {
+        pending.incrementAndGet();
+        boolean added;
+        synchronized (this) {
+            added = root.add(new Task(atMillis, task));
+        }
+        if (!added) {
+            run(task);
+        }
+    }
+
+    public int size() {
+        return pending.get();
+    }
+
+    public synchronized void start(String name) {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void loop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Bucket bucket = queue.take();
+                List<Task> due = new ArrayList<>();
+                synchronized (this) {
+                    while (bucket != null) {
+                        root.advanceClock(bucket.getExpiration());
+                        // les tâches d'un niveau grossier redescendent ; celles qui sont dues partent
+                        for (Task task : bucket.drain()) {
+                            if (!root.add(task)) {
+                                due.add(task);
+                            }
+                        }
+                        bucket = queue.poll();
+                    }
+                }
+                for (Task task : due) {
+                    run(task.action);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run(Runnable action) {
+        pending.decrementAndGet();
+        try {
+            executor.execute(action);
+        } catch (Exception e) {
+            logger.severe("Error running scheduled task: " + e.getMessage());
+        }
+    }
+
+    private static final class Task {
+        final long expiration;
+        final Runnable action;
+
+        Task(long expiration, Runnable action) {
+            this.expiration = expiration;
+            this.action = action;
+        }
+    }
+
+    // one wheel; guarded by the TimingWheel monitor
+    private final class Level {
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket[] buckets;
+        private long currentTime; // multiple of tickMs
+        private Level overflow;
+
+        Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket();
+            }
+            this.currentTime = startMs - (startMs % tickMs);
+        }
+
+        // false if the task is already due
+        boolean add(Task task) {
+            if (task.expiration < currentTime + tickMs) {
+                return false;
+            }
+            if (task.expiration < currentTime + interval) {
+                long virtualId = task.expiration / tickMs;
+                Bucket bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(task);
+                // un bucket réutilisé pour un nouveau tour repart dans la file
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(interval, wheelSize, currentTime);
+            }
+            return overflow.add(task);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    private static final class Bucket implements Delayed {
+        private final AtomicLong expiration = new AtomicLong(-1);
+        private final List<Task> tasks = new ArrayList<>();
+
+        void add(Task task) {
+            tasks.add(task);
+        }
+
+        // true if the expiration changed, i.e. the bucket must be (re)queued
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        List<Task> drain() {
+            List<Task> drained = new ArrayList<>(tasks);
+            tasks.clear();
+            expiration.set(-1);
+            return drained;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(expiration.get() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiration.get(), ((Bucket) other).expiration.get());
+        }
+    }
+}
@@ -1,45 +1,104 @@
 package cc.utils;
 
-import java.math.BigInteger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
  * Utility class that computes hashes of String, bytes, etc.
- * 
+ *
+ * Each thread has its own MessageDigest, so callers never contend on a shared lock.
+ *
  * @author smd
  *
  */
 public class Hash {
-	static MessageDigest md;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+	private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
 
-	static {
-		try {
-			md = MessageDigest.getInstance("SHA1");
-		} catch (NoSuchAlgorithmException e) {
-			// do nothing
-		}
-	}
-	
-	synchronized public static byte[] digest(byte[] data) {
+	private static final ThreadLocal<MessageDigest> sha1 = ThreadLocal.withInitial(() -> newDigest("SHA1"));
+
+	public static byte[] digest(byte[] data) {
+		MessageDigest md = sha1.get();
 		md.reset();
-		md.update(data);
-		return md.digest();
+		return md.digest(data);
 	};
-	
+
 	public static String of(String data) {
-		return String.format("%016X", new BigInteger(1,digest(data.getBytes())));
+		return toHexUpper(digest(data.getBytes()));
 	};
-	
+
 	public static String of(byte[] data) {
-		return String.format("%016X", new BigInteger(1,digest(data)));
+		return toHexUpper(digest(data));
 	};
-	
-	synchronized public static String of(Object ...values) {
+
+	public static String of(Object ...values) {
+		// toString() first: it may itself hash something on this thread
+		byte[][] parts = new byte[values.length][];
+		for( int i = 0; i < values.length; i++ )
+			parts[i] = values[i].toString().getBytes();
+
+		MessageDigest md = sha1.get();
 		md.reset();
-		for( Object o : values )
-			md.update( o.toString().getBytes() );
-		return String.format("%016X", new BigInteger(1, md.digest()));
+		for( byte[] part : parts )
+			md.update( part );
+		return toHexUpper(md.digest());
 	};
-	
+
+	/**
+	 * A fresh SHA-256 digest, to hash a stream chunk by chunk (content-addressed ids).
+	 */
+	public static MessageDigest sha256() {
+		return newDigest("SHA-256");
+	}
+
+	/**
+	 * Copies the stream to out in fixed-size chunks, feeding the digest with the same chunks,
+	 * without loading it in memory (media uploads). Stops as soon as more than limit bytes
+	 * were read: returns the number of bytes copied, or -1 past the limit.
+	 */
+	public static long copy(InputStream in, OutputStream out, MessageDigest md, long limit) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long total = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			total += read;
+			if (total > limit)
+				return -1;
+			md.update(buffer, 0, read);
+			out.write(buffer, 0, read);
+		}
+		return total;
+	}
+
+	public static String toHex(byte[] hash) {
+		return encode(hash, HEX_LOWER);
+	}
+
+	private static String toHexUpper(byte[] hash) {
+		return encode(hash, HEX_UPPER);
+	}
+
+	private static String encode(byte[] hash, char[] digits) {
+		byte[] out = new byte[hash.length * 2];
+		for( int i = 0; i < hash.length; i++ ) {
+			int b = hash[i] & 0xFF;
+			out[2 * i] = (byte) digits[b >>> 4];
+			out[2 * i + 1] = (byte) digits[b & 0x0F];
+		}
+		return new String(out, StandardCharsets.ISO_8859_1);
+	}
+
+	private static MessageDigest newDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(algorithm + " not available", e);
+		}
+	}
+
 }